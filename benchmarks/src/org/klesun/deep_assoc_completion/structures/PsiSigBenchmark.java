@@ -0,0 +1,110 @@
+package org.klesun.deep_assoc_completion.structures;
+
+import com.intellij.psi.PsiElement;
+import org.klesun.deep_assoc_completion.contexts.IExprCtx;
+import org.klesun.deep_assoc_completion.contexts.IFuncCtx;
+import org.klesun.lang.L;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.klesun.lang.Lang.*;
+
+/**
+ * JMH measurements of the signature SearchCtx looks every resolved expression up in
+ * cache by, both for real PSI and for PSI parsed from phpdoc into a fake file
+ *
+ * PSI and contexts are stubbed with proxies answering only what PsiSig asks
+ * them about, so it does not need a running IDE, see "Benchmarks" in README.md
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PsiSigBenchmark
+{
+    @Param({"10", "1000"})
+    public int size;
+
+    private L<PsiElement> exprs;
+    private IExprCtx realCtx;
+    private IExprCtx fakeCtx;
+    private Map<PsiSig, Integer> cache;
+
+    private static <T> T stub(Class<T> cls, Map<String, Object> methToResult)
+    {
+        return cls.cast(Proxy.newProxyInstance(cls.getClassLoader(), new Class[]{cls}, (proxy, meth, args) -> {
+            switch (meth.getName()) {
+                case "hashCode": return System.identityHashCode(proxy);
+                case "equals": return proxy == args[0];
+                case "toString": return cls.getSimpleName();
+                default: return methToResult.get(meth.getName());
+            }
+        }));
+    }
+
+    private static PsiElement makePsi(int offset, String text)
+    {
+        Map<String, Object> methToResult = new HashMap<>();
+        methToResult.put("getTextOffset", offset);
+        methToResult.put("getTextLength", text.length());
+        methToResult.put("getText", text);
+        return stub(PsiElement.class, methToResult);
+    }
+
+    private static IExprCtx makeCtx(IFuncCtx func, PsiElement fakeFileSource)
+    {
+        Map<String, Object> methToResult = new HashMap<>();
+        methToResult.put("func", func);
+        methToResult.put("getFakeFileSource", opt(fakeFileSource));
+        return stub(IExprCtx.class, methToResult);
+    }
+
+    @Setup
+    public void setUp()
+    {
+        IFuncCtx func = stub(IFuncCtx.class, new HashMap<>());
+        PsiElement docComment = makePsi(0, "/** @param $params = ['key' => 'value'] */");
+        realCtx = makeCtx(func, null);
+        fakeCtx = makeCtx(func, docComment);
+        exprs = list();
+        for (int i = 0; i < size; ++i) {
+            exprs.add(makePsi(i * 20, "$params['key" + i + "']"));
+        }
+        cache = new HashMap<>();
+        exprs.fch((expr, i) -> {
+            cache.put(new PsiSig(expr, realCtx), i);
+            cache.put(new PsiSig(expr, fakeCtx), i);
+        });
+    }
+
+    @Benchmark
+    public void makeRealSig(Blackhole bh)
+    {
+        exprs.fch(expr -> bh.consume(new PsiSig(expr, realCtx)));
+    }
+
+    @Benchmark
+    public void makeFakeSig(Blackhole bh)
+    {
+        exprs.fch(expr -> bh.consume(new PsiSig(expr, fakeCtx)));
+    }
+
+    @Benchmark
+    public void lookupRealSig(Blackhole bh)
+    {
+        exprs.fch(expr -> bh.consume(cache.get(new PsiSig(expr, realCtx))));
+    }
+
+    @Benchmark
+    public void lookupFakeSig(Blackhole bh)
+    {
+        exprs.fch(expr -> bh.consume(cache.get(new PsiSig(expr, fakeCtx))));
+    }
+}
@@ -0,0 +1,91 @@
+package org.klesun.lang;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.klesun.lang.Lang.*;
+
+/**
+ * JMH measurements of the iterator pipeline every resolver is built of
+ *
+ * not part of the plugin build, see "Benchmarks" in README.md on how to run it
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ItBenchmark
+{
+    @Param({"10", "1000"})
+    public int size;
+
+    private L<Integer> nums;
+    private MemIt<Integer> replayed;
+
+    @Setup
+    public void setUp()
+    {
+        nums = list();
+        for (int i = 0; i < size; ++i) {
+            nums.add(i);
+        }
+        replayed = It(nums).map(n -> n * 2).mem();
+        // memoize all values before the replays are measured
+        replayed.arr();
+    }
+
+    @Benchmark
+    public void mapFltChain(Blackhole bh)
+    {
+        It(nums).map(n -> n + 1).flt(n -> n % 3 != 0).map(n -> n * 2).fch(n -> bh.consume(n));
+    }
+
+    @Benchmark
+    public void fapChain(Blackhole bh)
+    {
+        It(nums).fap(n -> list(n, n + 1)).fap(n -> som(n)).fch(n -> bh.consume(n));
+    }
+
+    @Benchmark
+    public void fopChain(Blackhole bh)
+    {
+        It(nums).fop(n -> opt(n).flt(m -> m % 2 == 0)).fch(n -> bh.consume(n));
+    }
+
+    @Benchmark
+    public void unqHalfRepeated(Blackhole bh)
+    {
+        It(nums).map(n -> n / 2).unq().fch(n -> bh.consume(n));
+    }
+
+    @Benchmark
+    public void memItFirstPass(Blackhole bh)
+    {
+        for (Integer n: It(nums).map(x -> x * 2).mem()) {
+            bh.consume(n);
+        }
+    }
+
+    @Benchmark
+    public void memItReplay(Blackhole bh)
+    {
+        for (Integer n: replayed) {
+            bh.consume(n);
+        }
+    }
+
+    @Benchmark
+    public void cncFanOut(Blackhole bh)
+    {
+        It.cnc(
+            It(nums).map(n -> n + 1),
+            It(nums).flt(n -> n % 2 == 0),
+            It(nums).fap(n -> list(n)),
+            nums
+        ).fch(n -> bh.consume(n));
+    }
+}
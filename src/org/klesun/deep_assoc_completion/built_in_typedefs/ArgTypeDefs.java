@@ -9,13 +9,20 @@ import org.klesun.deep_assoc_completion.structures.DeepType;
 import org.klesun.deep_assoc_completion.structures.KeyType;
 import org.klesun.deep_assoc_completion.structures.Mkt;
 import org.klesun.lang.It;
+import org.klesun.lang.L;
 import org.klesun.lang.Tls;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import static org.klesun.deep_assoc_completion.structures.Mkt.*;
 import static org.klesun.lang.Lang.*;
 
 public class ArgTypeDefs
 {
+    // function name -> arg type getter, built once, types are created per call on demand
+    final private static Map<String, F3<ArgTypeDefs, PsiElement, Integer, Iterable<DeepType>>> nameToGetter = makeNameToGetter();
+
     final private IExprCtx ctx;
 
     public ArgTypeDefs(IExprCtx ctx)
@@ -95,98 +102,140 @@ public class ArgTypeDefs
         return getArgType(name, builtInFunc, argOrder);
     }
 
-    /** @param builtInFunc reference PSI needed for type instantiation */
-    public Iterable<DeepType> getArgType(String name, PsiElement builtInFunc, int argOrder)
+    private static Iterable<DeepType> imageaffine(PsiElement builtInFunc, int argOrder)
+    {
+        if (argOrder == 1) {
+            return som(assoc(builtInFunc, Tls.range(0, 6)
+                .map(n -> T2(n + "", mixed(builtInFunc).mt()))));
+        } else if (argOrder == 2) {
+            return som(rect(builtInFunc));
+        } else {
+            return It.non();
+        }
+    }
+
+    private static DeepType rect(PsiElement builtInFunc)
+    {
+        return assoc(builtInFunc, list(
+            T2("x", mixed(builtInFunc).mt()),
+            T2("y", mixed(builtInFunc).mt()),
+            T2("width", mixed(builtInFunc).mt()),
+            T2("height", mixed(builtInFunc).mt())
+        ));
+    }
+
+    private static Iterable<DeepType> proc_open(PsiElement builtInFunc, int argOrder)
     {
-        if (list("stream_context_create", "stream_context_get_default", "stream_context_set_default").contains(name) && argOrder == 0) {
-            return som(stream_context_create(builtInFunc));
-        } else if ("stream_context_set_params".equals(name) && argOrder == 1) {
-            return som(assoc(builtInFunc, list(
-                T2("notification", callable(builtInFunc).mt()),
-                T2("options", mixed(builtInFunc).mt())
+        if (argOrder == 1) {
+            return som(assocCmnt(builtInFunc, list(
+                T3("0", mixed(builtInFunc).mt(), som("STDIN")),
+                T3("1", mixed(builtInFunc).mt(), som("STDOUT")),
+                T3("2", mixed(builtInFunc).mt(), som("STDERR"))
             )));
-        } else if ("stream_context_set_option".equals(name) && argOrder == 1) {
-            return som(stream_context_create(builtInFunc));
-        } else if ("image_type_to_mime_type".equals(name) && argOrder == 0) {
-            return image_type_to_mime_type(builtInFunc);
-        } else if ("imageaffine".equals(name)) {
-            if (argOrder == 1) {
-                return som(assoc(builtInFunc, Tls.range(0, 6)
-                    .map(n -> T2(n + "", mixed(builtInFunc).mt()))));
-            } else if (argOrder == 2) {
-                return som(assoc(builtInFunc, list(
-                    T2("x", mixed(builtInFunc).mt()),
-                    T2("y", mixed(builtInFunc).mt()),
-                    T2("width", mixed(builtInFunc).mt()),
-                    T2("height", mixed(builtInFunc).mt())
-                )));
-            }
-        } else if ("imagecrop".equals(name)) {
-            if (argOrder == 1) {
-                return som(assoc(builtInFunc, list(
-                    T2("x", mixed(builtInFunc).mt()),
-                    T2("y", mixed(builtInFunc).mt()),
-                    T2("width", mixed(builtInFunc).mt()),
-                    T2("height", mixed(builtInFunc).mt())
-                )));
-            }
-        } else if ("proc_open".equals(name)) {
-            if (argOrder == 1) {
-                return som(assocCmnt(builtInFunc, list(
-                    T3("0", mixed(builtInFunc).mt(), som("STDIN")),
-                    T3("1", mixed(builtInFunc).mt(), som("STDOUT")),
-                    T3("2", mixed(builtInFunc).mt(), som("STDERR"))
-                )));
-            } else if (argOrder == 5) {
-                return som(assocCmnt(builtInFunc, list(
-                    T3("suppress_errors", bool(builtInFunc).mt(), non()),
-                    T3("bypass_shell", bool(builtInFunc).mt(), non()),
-                    T3("context", res(builtInFunc).mt(), som("= stream_context_create()")),
-                    T3("binary_pipes", mixed(builtInFunc).mt(), non())
-                )));
-            }
-        } else if ("str_pad".equals(name) && argOrder == 2) {
-            return cst(ctx, list("STR_PAD_LEFT", "STR_PAD_RIGHT", "STR_PAD_BOTH"));
-        } else if ("json_encode".equals(name) && argOrder == 1) {
-            return cst(ctx, Cst.JSON_.map(cst -> cst.a));
-        } else if ("pcntl_signal".equals(name) && argOrder == 0) {
-            return cst(ctx, Cst.SIG.map(cst -> cst.a));
-        } else if ("curl_setopt".equals(name) && argOrder == 1) {
-            return cst(ctx, Cst.CURLOPT_().map(cst -> cst.a));
-        } else if ("curl_setopt_array".equals(name) && argOrder == 1) {
-            DeepType arrt = new DeepType(builtInFunc, PhpType.ARRAY, false);
-            Cst.CURLOPT_().fch(t -> t.nme((cstName, getType, descr) -> {
-                Mkt.cst(ctx, som(cstName)).fch(cst -> {
-                    Mt valmt = getType.apply(cst.definition);
-                    arrt.addKey(KeyType.mt(som(cst), cst.definition))
-                        .addType(Granted(valmt), valmt.getIdeaTypes().fst().def(PhpType.UNSET))
-                        .addComments(opt(descr).flt(c -> c.length() > 0));
-                });
-            }));
-            return som(arrt);
-        } else if ("file_put_contents".equals(name) && argOrder == 2) {
-            return cst(ctx, list(
-                "FILE_USE_INCLUDE_PATH", "FILE_IGNORE_NEW_LINES",
-                "FILE_SKIP_EMPTY_LINES", "FILE_APPEND", "FILE_NO_DEFAULT_CONTEXT"
-            ));
-        } else if ("preg_match".equals(name) && argOrder == 3) {
-            return cst(ctx, list("PREG_OFFSET_CAPTURE", "PREG_UNMATCHED_AS_NULL"));
-        } else if ("preg_split".equals(name) && argOrder == 3) {
-            return cst(ctx, list("PREG_SPLIT_NO_EMPTY", "PREG_SPLIT_DELIM_CAPTURE", "PREG_SPLIT_OFFSET_CAPTURE"));
-        } else if ("preg_match_all".equals(name) && argOrder == 3) {
-            return cst(ctx, list("PREG_SET_ORDER", "PREG_PATTERN_ORDER", "PREG_OFFSET_CAPTURE", "PREG_UNMATCHED_AS_NULL"));
-        } else if ("simplexml_load_string".equals(name) && argOrder == 2
-                || "simplexml_load_file".equals(name) && argOrder == 2
-        ) {
-            return cst(ctx, list(
-                "LIBXML_NOCDATA", "LIBXML_NOBLANKS", "LIBXML_NOEMPTYTAG", "LIBXML_NOEMPTYTAG", "LIBXML_NOERROR",
-                "LIBXML_NONET", "LIBXML_NOWARNING", "LIBXML_NOXMLDECL", "LIBXML_NSCLEAN", "LIBXML_PARSEHUGE",
-                "LIBXML_PEDANTIC", "LIBXML_XINCLUDE", "LIBXML_ERR_ERROR", "LIBXML_ERR_FATAL", "LIBXML_ERR_NONE",
-                "LIBXML_ERR_WARNING", "LIBXML_VERSION", "LIBXML_DOTTED_VERSION", "LIBXML_SCHEMA_CREATE",
-                "LIBXML_BIGLINES", "LIBXML_COMPACT", "LIBXML_DTDATTR", "LIBXML_DTDLOAD", "LIBXML_DTDVALID",
-                "LIBXML_HTML_NOIMPLIED", "LIBXML_HTML_NODEFDTD"
-            ));
+        } else if (argOrder == 5) {
+            return som(assocCmnt(builtInFunc, list(
+                T3("suppress_errors", bool(builtInFunc).mt(), non()),
+                T3("bypass_shell", bool(builtInFunc).mt(), non()),
+                T3("context", res(builtInFunc).mt(), som("= stream_context_create()")),
+                T3("binary_pipes", mixed(builtInFunc).mt(), non())
+            )));
+        } else {
+            return It.non();
         }
-        return It.non();
+    }
+
+    // second arg
+    private DeepType curl_setopt_array(PsiElement builtInFunc)
+    {
+        DeepType arrt = new DeepType(builtInFunc, PhpType.ARRAY, false);
+        Cst.CURLOPT_().fch(t -> t.nme((cstName, getType, descr) -> {
+            Mkt.cst(ctx, som(cstName)).fch(cst -> {
+                Mt valmt = getType.apply(cst.definition);
+                arrt.addKey(KeyType.mt(som(cst), cst.definition))
+                    .addType(Granted(valmt), valmt.getIdeaTypes().fst().def(PhpType.UNSET))
+                    .addComments(opt(descr).flt(c -> c.length() > 0));
+            });
+        }));
+        return arrt;
+    }
+
+    /** a function arg which is a set of constant flags */
+    private static void addCsts(Map<String, F3<ArgTypeDefs, PsiElement, Integer, Iterable<DeepType>>> table, String name, int order, L<String> cstNames)
+    {
+        table.put(name, (self, def, argOrder) -> argOrder == order ? cst(self.ctx, cstNames) : It.non());
+    }
+
+    private static void addArg(Map<String, F3<ArgTypeDefs, PsiElement, Integer, Iterable<DeepType>>> table, String name, int order, F2<ArgTypeDefs, PsiElement, Iterable<DeepType>> getType)
+    {
+        table.put(name, (self, def, argOrder) -> argOrder == order ? getType.apply(self, def) : It.non());
+    }
+
+    private static Map<String, F3<ArgTypeDefs, PsiElement, Integer, Iterable<DeepType>>> makeNameToGetter()
+    {
+        Map<String, F3<ArgTypeDefs, PsiElement, Integer, Iterable<DeepType>>> table = new HashMap<>();
+        It(list("stream_context_create", "stream_context_get_default", "stream_context_set_default"))
+            .fch(name -> addArg(table, name, 0, (self, def) -> som(stream_context_create(def))));
+        addArg(table, "stream_context_set_params", 1, (self, def) -> som(assoc(def, list(
+            T2("notification", callable(def).mt()),
+            T2("options", mixed(def).mt())
+        ))));
+        addArg(table, "stream_context_set_option", 1, (self, def) -> som(stream_context_create(def)));
+        addArg(table, "image_type_to_mime_type", 0, (self, def) -> self.image_type_to_mime_type(def));
+        table.put("imageaffine", (self, def, argOrder) -> imageaffine(def, argOrder));
+        addArg(table, "imagecrop", 1, (self, def) -> som(rect(def)));
+        table.put("proc_open", (self, def, argOrder) -> proc_open(def, argOrder));
+        addCsts(table, "str_pad", 2, list("STR_PAD_LEFT", "STR_PAD_RIGHT", "STR_PAD_BOTH"));
+        addCsts(table, "json_encode", 1, Cst.JSON_.map(cst -> cst.a).arr());
+        addCsts(table, "pcntl_signal", 0, Cst.SIG.map(cst -> cst.a).arr());
+        addCsts(table, "curl_setopt", 1, Cst.CURLOPT_NAMES());
+        addArg(table, "curl_setopt_array", 1, (self, def) -> som(self.curl_setopt_array(def)));
+        addCsts(table, "file_put_contents", 2, list(
+            "FILE_USE_INCLUDE_PATH", "FILE_IGNORE_NEW_LINES",
+            "FILE_SKIP_EMPTY_LINES", "FILE_APPEND", "FILE_NO_DEFAULT_CONTEXT"
+        ));
+        addCsts(table, "preg_match", 3, list("PREG_OFFSET_CAPTURE", "PREG_UNMATCHED_AS_NULL"));
+        addCsts(table, "preg_split", 3, list("PREG_SPLIT_NO_EMPTY", "PREG_SPLIT_DELIM_CAPTURE", "PREG_SPLIT_OFFSET_CAPTURE"));
+        addCsts(table, "preg_match_all", 3, list("PREG_SET_ORDER", "PREG_PATTERN_ORDER", "PREG_OFFSET_CAPTURE", "PREG_UNMATCHED_AS_NULL"));
+        L<String> libxmlCsts = list(
+            "LIBXML_NOCDATA", "LIBXML_NOBLANKS", "LIBXML_NOEMPTYTAG", "LIBXML_NOEMPTYTAG", "LIBXML_NOERROR",
+            "LIBXML_NONET", "LIBXML_NOWARNING", "LIBXML_NOXMLDECL", "LIBXML_NSCLEAN", "LIBXML_PARSEHUGE",
+            "LIBXML_PEDANTIC", "LIBXML_XINCLUDE", "LIBXML_ERR_ERROR", "LIBXML_ERR_FATAL", "LIBXML_ERR_NONE",
+            "LIBXML_ERR_WARNING", "LIBXML_VERSION", "LIBXML_DOTTED_VERSION", "LIBXML_SCHEMA_CREATE",
+            "LIBXML_BIGLINES", "LIBXML_COMPACT", "LIBXML_DTDATTR", "LIBXML_DTDLOAD", "LIBXML_DTDVALID",
+            "LIBXML_HTML_NOIMPLIED", "LIBXML_HTML_NODEFDTD"
+        );
+        addCsts(table, "simplexml_load_string", 2, libxmlCsts);
+        addCsts(table, "simplexml_load_file", 2, libxmlCsts);
+        addCsts(table, "array_filter", 2, list("ARRAY_FILTER_USE_KEY", "ARRAY_FILTER_USE_BOTH"));
+        addCsts(table, "count", 1, list("COUNT_NORMAL", "COUNT_RECURSIVE"));
+        addCsts(table, "json_decode", 3, list(
+            "JSON_BIGINT_AS_STRING", "JSON_INVALID_UTF8_IGNORE", "JSON_INVALID_UTF8_SUBSTITUTE",
+            "JSON_OBJECT_AS_ARRAY", "JSON_THROW_ON_ERROR"
+        ));
+        L<String> htmlEntCsts = list(
+            "ENT_COMPAT", "ENT_QUOTES", "ENT_NOQUOTES", "ENT_IGNORE", "ENT_SUBSTITUTE",
+            "ENT_DISALLOWED", "ENT_HTML401", "ENT_XML1", "ENT_XHTML", "ENT_HTML5"
+        );
+        It(list("htmlspecialchars", "htmlentities", "html_entity_decode", "htmlspecialchars_decode"))
+            .fch(name -> addCsts(table, name, 1, htmlEntCsts));
+        addCsts(table, "pathinfo", 1, list(
+            "PATHINFO_DIRNAME", "PATHINFO_BASENAME", "PATHINFO_EXTENSION", "PATHINFO_FILENAME"
+        ));
+        addCsts(table, "glob", 1, list(
+            "GLOB_MARK", "GLOB_NOSORT", "GLOB_NOCHECK", "GLOB_NOESCAPE",
+            "GLOB_BRACE", "GLOB_ONLYDIR", "GLOB_ERR"
+        ));
+        addCsts(table, "round", 2, list(
+            "PHP_ROUND_HALF_UP", "PHP_ROUND_HALF_DOWN", "PHP_ROUND_HALF_EVEN", "PHP_ROUND_HALF_ODD"
+        ));
+        return table;
+    }
+
+    /** @param builtInFunc reference PSI needed for type instantiation */
+    public Iterable<DeepType> getArgType(String name, PsiElement builtInFunc, int argOrder)
+    {
+        return opt(nameToGetter.get(name))
+            .map(getter -> getter.apply(this, builtInFunc, argOrder))
+            .def(It.non());
     }
 }
@@ -97,10 +97,23 @@ public class Cst {
         T2("SIGSYS", 31)
     );
 
+    // built once, types are instantiated from the getters per psi on demand
+    final private static L<T3<String, Lang.F<PsiElement, Mt>, String>> CURLOPT_TABLE = makeCurlopt();
+    final private static L<String> CURLOPT_NAMES = CURLOPT_TABLE.map(t -> t.a).arr();
+
     public static L<T3<String, Lang.F<PsiElement, Mt>, String>> CURLOPT_()
+    {
+        return CURLOPT_TABLE;
+    }
+
+    public static L<String> CURLOPT_NAMES()
+    {
+        return CURLOPT_NAMES;
+    }
+
+    private static L<T3<String, Lang.F<PsiElement, Mt>, String>> makeCurlopt()
     {
         L<T3<String, Lang.F<PsiElement, Mt>, String>> result = list();
-        Lang.F<PsiElement, Mt> getType = (huj) -> Mkt.bool(huj, true).mt();
         result.add(T3("CURLOPT_AUTOREFERER"             , (psi) -> Mkt.bool(psi, true).mt(), "TRUE to automatically set the Referer: field in requests where it follows a Location: redirect."));
         result.add(T3("CURLOPT_BINARYTRANSFER"          , (psi) -> Mkt.bool(psi, true).mt(), "TRUE to return the raw output when CURLOPT_RETURNTRANSFER is used.	From PHP 5.1.3, this option has no effect: the raw output will always be returned when CURLOPT_RETURNTRANSFER is used."));
         result.add(T3("CURLOPT_COOKIESESSION"           , (psi) -> Mkt.bool(psi, true).mt(), "TRUE to mark this as a new cookie 'session'. It will force libcurl to ignore all cookies it is about to load that are 'session cookies' from the previous session. By default, libcurl always stores and loads all cookies, independent if they are session cookies or not. Session cookies are cookies without expiry date and they are meant to be alive and existing for this 'session' only."));
@@ -11,11 +11,44 @@ import org.klesun.deep_assoc_completion.structures.KeyType;
 import org.klesun.lang.It;
 import org.klesun.lang.L;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import static org.klesun.deep_assoc_completion.structures.Mkt.*;
 import static org.klesun.lang.Lang.*;
 
 public class ReturnTypeDefs
 {
+    final private static L<String> ERR_CST_NAMES = list(
+        "E_ERROR", // 1
+        "E_WARNING", // 2
+        "E_PARSE", // 4
+        "E_NOTICE", // 8
+        "E_CORE_ERROR", // 16
+        "E_CORE_WARNING", // 32
+        "E_COMPILE_ERROR", // 64
+        "E_COMPILE_WARNING", // 128
+        "E_USER_ERROR", // 256
+        "E_USER_WARNING", // 512
+        "E_USER_NOTICE", // 1024
+        "E_STRICT", // 2048
+        "E_RECOVERABLE_ERROR", // 4096
+        "E_DEPRECATED", // 8192
+        "E_USER_DEPRECATED", // 16384
+        "E_ALL" // 32767
+    );
+    final private static L<String> PREG_ERR_CST_NAMES = list(
+        "PREG_NO_ERROR",
+        "PREG_INTERNAL_ERROR",
+        "PREG_BACKTRACK_LIMIT_ERROR",
+        "PREG_RECURSION_LIMIT_ERROR",
+        "PREG_BAD_UTF8_ERROR",
+        "PREG_BAD_UTF8_OFFSET_ERROR",
+        "PREG_JIT_STACKLIMIT_ERROR"
+    );
+    // function name -> return type getter, built once, types are created per call on demand
+    final private static Map<String, F3<ReturnTypeDefs, FunctionReferenceImpl, IFuncCtx, Iterable<DeepType>>> nameToGetter = makeNameToGetter();
+
     final private IExprCtx ctx;
 
     public ReturnTypeDefs(IExprCtx ctx)
@@ -143,25 +176,7 @@ public class ReturnTypeDefs
     private DeepType error_get_last(FunctionReferenceImpl call)
     {
         PhpIndex idx = PhpIndex.getInstance(call.getProject());
-        L<String> errCstNames = list(
-            "E_ERROR", // 1
-            "E_WARNING", // 2
-            "E_PARSE", // 4
-            "E_NOTICE", // 8
-            "E_CORE_ERROR", // 16
-            "E_CORE_WARNING", // 32
-            "E_COMPILE_ERROR", // 64
-            "E_COMPILE_WARNING", // 128
-            "E_USER_ERROR", // 256
-            "E_USER_WARNING", // 512
-            "E_USER_NOTICE", // 1024
-            "E_STRICT", // 2048
-            "E_RECOVERABLE_ERROR", // 4096
-            "E_DEPRECATED", // 8192
-            "E_USER_DEPRECATED", // 16384
-            "E_ALL" // 32767
-        );
-        It<DeepType> errCstTyppes = errCstNames.fap(nme -> It(idx.getConstantsByName(nme)))
+        It<DeepType> errCstTyppes = ERR_CST_NAMES.fap(nme -> It(idx.getConstantsByName(nme)))
             .fap(cstDef -> MainRes.resolveConst(cstDef, ctx));
         return assoc(call, list(
             T2("type", new Mt(errCstTyppes)),
@@ -280,49 +295,107 @@ public class ReturnTypeDefs
         return It(som(arrt));
     }
 
+    private static DeepType pathinfo(FunctionReferenceImpl call)
+    {
+        return assoc(call, list(
+            T2("dirname", str(call, "/var/www/html").mt()),
+            T2("basename", str(call, "index.inc.php").mt()),
+            T2("extension", str(call, "php").mt()),
+            T2("filename", str(call, "index.inc").mt())
+        ));
+    }
+
+    private static DeepType getdate(FunctionReferenceImpl call)
+    {
+        return assoc(call, list(
+            T2("seconds", inte(call, 40).mt()),
+            T2("minutes", inte(call, 58).mt()),
+            T2("hours", inte(call, 21).mt()),
+            T2("mday", inte(call, 17).mt()),
+            T2("wday", inte(call, 2).mt()),
+            T2("mon", inte(call, 6).mt()),
+            T2("year", inte(call, 2003).mt()),
+            T2("yday", inte(call, 167).mt()),
+            T2("weekday", str(call, "Tuesday").mt()),
+            T2("month", str(call, "June").mt()),
+            T2("0", inte(call, 1055901520).mt())
+        ));
+    }
+
+    private static DeepType posix_uname(FunctionReferenceImpl call)
+    {
+        return assoc(call, list(
+            T2("sysname", str(call, "Linux").mt()),
+            T2("nodename", str(call, "localhost").mt()),
+            T2("release", str(call, "4.15.0-43-generic").mt()),
+            T2("version", str(call, "#46-Ubuntu SMP Thu Dec 6 14:45:28 UTC 2018").mt()),
+            T2("machine", str(call, "x86_64").mt()),
+            T2("domainname", str(call, "(none)").mt())
+        ));
+    }
+
+    private static DeepType posix_times(FunctionReferenceImpl call)
+    {
+        return assoc(call, list(
+            T2("ticks", inte(call, 1720392013).mt()),
+            T2("utime", inte(call, 3).mt()),
+            T2("stime", inte(call, 1).mt()),
+            T2("cutime", inte(call, 0).mt()),
+            T2("cstime", inte(call, 0).mt())
+        ));
+    }
+
+    private static DeepType gc_status(FunctionReferenceImpl call)
+    {
+        return assoc(call, list(
+            T2("runs", inte(call, 0).mt()),
+            T2("collected", inte(call, 0).mt()),
+            T2("threshold", inte(call, 10001).mt()),
+            T2("roots", inte(call, 0).mt())
+        ));
+    }
+
+    private static void addStatic(Map<String, F3<ReturnTypeDefs, FunctionReferenceImpl, IFuncCtx, Iterable<DeepType>>> table, String name, F<FunctionReferenceImpl, DeepType> getType)
+    {
+        table.put(name, (self, call, callCtx) -> list(getType.apply(call)));
+    }
+
+    private static Map<String, F3<ReturnTypeDefs, FunctionReferenceImpl, IFuncCtx, Iterable<DeepType>>> makeNameToGetter()
+    {
+        Map<String, F3<ReturnTypeDefs, FunctionReferenceImpl, IFuncCtx, Iterable<DeepType>>> table = new HashMap<>();
+        table.put("curl_getinfo", (self, call, callCtx) -> !callCtx.getArg(1).has()
+            ? list(curl_getinfo(call)) : list());
+        addStatic(table, "stream_get_meta_data", ReturnTypeDefs::stream_get_meta_data);
+        addStatic(table, "mysqli_get_links_stats", ReturnTypeDefs::mysqli_get_links_stats);
+        addStatic(table, "localeconv", ReturnTypeDefs::localeconv);
+        addStatic(table, "proc_get_status", ReturnTypeDefs::proc_get_status);
+        addStatic(table, "getrusage", ReturnTypeDefs::getrusage);
+        table.put("error_get_last", (self, call, callCtx) -> list(self.error_get_last(call)));
+        addStatic(table, "dns_get_record", ReturnTypeDefs::dns_get_record);
+        addStatic(table, "stat", ReturnTypeDefs::fstat);
+        addStatic(table, "fstat", ReturnTypeDefs::fstat);
+        addStatic(table, "lstat", ReturnTypeDefs::fstat);
+        table.put("ob_get_status", (self, call, callCtx) -> list(ob_get_status(callCtx, call)));
+        addStatic(table, "getimagesize", ReturnTypeDefs::getimagesize);
+        addStatic(table, "parse_url", ReturnTypeDefs::parse_url);
+        table.put("image_type_to_mime_type", (self, call, callCtx) -> self.image_type_to_mime_type(call));
+        table.put("debug_backtrace", (self, call, callCtx) -> self.debug_backtrace(call));
+        table.put("preg_last_error", (self, call, callCtx) -> cst(self.ctx, PREG_ERR_CST_NAMES));
+        // with flags it returns a string
+        table.put("pathinfo", (self, call, callCtx) -> !callCtx.getArg(1).has()
+            ? list(pathinfo(call)) : list());
+        addStatic(table, "getdate", ReturnTypeDefs::getdate);
+        addStatic(table, "posix_uname", ReturnTypeDefs::posix_uname);
+        addStatic(table, "posix_times", ReturnTypeDefs::posix_times);
+        addStatic(table, "gc_status", ReturnTypeDefs::gc_status);
+        return table;
+    }
+
     public Iterable<DeepType> getReturnType(FunctionReferenceImpl call, IFuncCtx callCtx)
     {
         String name = opt(call.getName()).def("");
-        if (name.equals("curl_getinfo") && !callCtx.getArg(1).has()) {
-            return list(curl_getinfo(call));
-        } else if (name.equals("stream_get_meta_data")) {
-            return list(stream_get_meta_data(call));
-        } else if (name.equals("mysqli_get_links_stats")) {
-            return list(mysqli_get_links_stats(call));
-        } else if (name.equals("localeconv")) {
-            return list(localeconv(call));
-        } else if (name.equals("proc_get_status")) {
-            return list(proc_get_status(call));
-        } else if (name.equals("getrusage")) {
-            return list(getrusage(call));
-        } else if (name.equals("error_get_last")) {
-            return list(error_get_last(call));
-        } else if (name.equals("dns_get_record")) {
-            return list(dns_get_record(call));
-        } else if (list("stat", "fstat", "lstat").contains(name)) {
-            return list(fstat(call));
-        } else if (name.equals("ob_get_status")) {
-            return list(ob_get_status(callCtx, call));
-        } else if (name.equals("getimagesize")) {
-            return list(getimagesize(call));
-        } else if (name.equals("parse_url")) {
-            return list(parse_url(call));
-        } else if (name.equals("image_type_to_mime_type")) {
-            return image_type_to_mime_type(call);
-        } else if (name.equals("debug_backtrace")) {
-            return debug_backtrace(call);
-        } else if (name.equals("preg_last_error")) {
-            return cst(ctx, list(
-                "PREG_NO_ERROR",
-                "PREG_INTERNAL_ERROR",
-                "PREG_BACKTRACK_LIMIT_ERROR",
-                "PREG_RECURSION_LIMIT_ERROR",
-                "PREG_BAD_UTF8_ERROR",
-                "PREG_BAD_UTF8_OFFSET_ERROR",
-                "PREG_JIT_STACKLIMIT_ERROR"
-            ));
-        } else {
-            return list();
-        }
+        return opt(nameToGetter.get(name))
+            .map(getter -> getter.apply(this, call, callCtx))
+            .def(list());
     }
 }
@@ -11,6 +11,7 @@ import org.jetbrains.annotations.Nullable;
 import org.klesun.deep_assoc_completion.contexts.ExprCtx;
 import org.klesun.deep_assoc_completion.contexts.FuncCtx;
 import org.klesun.deep_assoc_completion.contexts.IExprCtx;
+import org.klesun.deep_assoc_completion.contexts.ResumableSearch;
 import org.klesun.deep_assoc_completion.contexts.SearchCtx;
 import org.klesun.deep_assoc_completion.structures.DeepType;
 import org.klesun.deep_assoc_completion.entry.DeepSettings;
@@ -198,11 +199,44 @@ public class AssocKeyPvdr extends CompletionProvider<CompletionParameters>
         return T2(nameToMutLookup, keyToComments);
     }
 
+    /**
+     * same file, caret position and document contents - changes in other files
+     * the search read are checked by the search itself, see SearchCtx.isUpToDate()
+     */
+    private static String makeSearchKey(CompletionParameters parameters)
+    {
+        return parameters.getOriginalFile().getVirtualFile() + ":" + parameters.getOffset()
+            + ":" + parameters.getEditor().getDocument().getModificationStamp();
+    }
+
+    private static SearchCtx makeSearch(CompletionParameters parameters, String key, int depth)
+    {
+        return opt(parameters.getEditor().getProject())
+            .fop(ResumableSearch::inst)
+            .fop(resumable -> resumable.take(key, depth))
+            .uni(
+                last -> last.resume(depth),
+                () -> new SearchCtx(parameters).setDepth(depth)
+            );
+    }
+
+    /** when tree was not recorded (not a debug search), written only if debug log is enabled for this class */
+    private static void logRecentExprs(SearchCtx search)
+    {
+        com.intellij.openapi.diagnostic.Logger logger = com.intellij.openapi.diagnostic.Logger.getInstance(AssocKeyPvdr.class);
+        if (logger.isDebugEnabled()) {
+            logger.debug("last " + search.getRecentExprs().size() + " resolved expressions:\n" + search.getRecentExprs()
+                .map(ctx -> Tls.repeat(" ", ctx.depth) + SearchCtx.formatPsi(ctx.expr))
+                .str("\n"));
+        }
+    }
+
     @Override
     protected void addCompletions(@NotNull CompletionParameters parameters, ProcessingContext processingContext, @NotNull CompletionResultSet result)
     {
         int depth = getMaxDepth(parameters);
-        SearchCtx search = new SearchCtx(parameters).setDepth(depth);
+        String searchKey = makeSearchKey(parameters);
+        SearchCtx search = makeSearch(parameters, searchKey, depth);
         FuncCtx funcCtx = new FuncCtx(search);
         search.isMain = true;
         Set<String> suggested = new HashSet<>();
@@ -220,24 +254,36 @@ public class AssocKeyPvdr extends CompletionProvider<CompletionParameters>
         try {
             arrTit = resolveAtPsi(caretPsi, exprCtx);
         } catch (Throwable exc) {
-            printExprTree(exprCtx, search, 0);
+            if (search.debug) {
+                printExprTree(exprCtx, search, 0);
+            } else {
+                logRecentExprs(search);
+            }
             throw exc;
         }
-        System.out.println("gonna start iterating with " + search.getExpressionsResolved() + " expression already resolved");
-        arrTit.has();
-        System.out.println("checked if iterator has anything, took " + search.getExpressionsResolved() + " expressions");
+        if (search.debug) {
+            System.out.println("gonna start iterating with " + search.getExpressionsResolved() + " expression already resolved");
+            arrTit.has();
+            System.out.println("checked if iterator has anything, took " + search.getExpressionsResolved() + " expressions");
+        }
 
         Mt arrMt = new Mt(arrTit);
         // preliminary keys without type - they may be at least 3 times faster in some cases
         T2<Dict<MutableLookup>, Map<String, Set<String>>> tuple = addNameOnly(arrMt, result, includeQuotes, (keyName) -> {
-            System.out.println("resolved " + search.getExpressionsResolved() + " expressions for first key - " + keyName);
+            if (search.debug) {
+                System.out.println("resolved " + search.getExpressionsResolved() + " expressions for first key - " + keyName);
+            }
             firstTime.set(System.nanoTime() - startTime);
         });
         Dict<MutableLookup> nameToMutLookup = tuple.a;
         Map<String, Set<String>> keyToComments = tuple.b;
 
         long elapsed = System.nanoTime() - startTime;
-        System.out.println("Resolved all key names in " + search.getExpressionsResolved() + " expressions");
+        if (search.debug) {
+            System.out.println("Resolved all key names in " + search.getExpressionsResolved() + " expressions");
+            search.getTypeCache().thn(cache -> System.out.println("project type cache - " + cache.getHits() +
+                " hits, " + cache.getMisses() + " misses, " + cache.size() + " entries"));
+        }
         result.addLookupAdvertisement("Press _Ctrl + Space_ for more options. Resolved " + search.getExpressionsResolved() +
             " expressions in " + (elapsed / 1000000000.0) + " sec. First in " + (firstTime.get() / 1000000000.0));
 
@@ -274,5 +320,10 @@ public class AssocKeyPvdr extends CompletionProvider<CompletionParameters>
                 search.overrideMaxExpr = non();
                 mutLook.lookupData = lookup;
             });
+        // not reached if completion was cancelled, such search is not resumed
+        search.persistTypes();
+        opt(parameters.getEditor().getProject())
+            .fop(ResumableSearch::inst)
+            .thn(resumable -> resumable.putBack(searchKey, search));
     }
 }
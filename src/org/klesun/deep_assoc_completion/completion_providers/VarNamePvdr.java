@@ -24,10 +24,12 @@ import org.klesun.deep_assoc_completion.contexts.FuncCtx;
 import org.klesun.deep_assoc_completion.contexts.IExprCtx;
 import org.klesun.deep_assoc_completion.contexts.SearchCtx;
 import org.klesun.deep_assoc_completion.helpers.Mt;
+import org.klesun.deep_assoc_completion.indexes.GlobalWriteIndex;
 import org.klesun.deep_assoc_completion.resolvers.VarRes;
 import org.klesun.deep_assoc_completion.resolvers.var_res.AssRes;
 import org.klesun.deep_assoc_completion.structures.DeepType;
 import org.klesun.lang.It;
+import org.klesun.lang.L;
 import org.klesun.lang.MemIt;
 import org.klesun.lang.Tls;
 
@@ -49,7 +51,8 @@ public class VarNamePvdr extends CompletionProvider<CompletionParameters>
     {
         return tit.fap(t -> t.keys)
             .fap(k -> k.keyType.getNames()
-                .map(strVal -> makeLookupBase("$" + strVal, k.getTypes().map(t -> t.briefType).unq().str("|")))
+                // not k.getTypes(), since value of each global var is resolved only if needed
+                .map(strVal -> makeLookupBase("$" + strVal, k.getBriefTypes().unq().str("|")))
                 .map((lookup, i) -> PrioritizedLookupElement.withPriority(lookup, -1000 - i)))
             .unq(l -> l.getLookupString());
     }
@@ -73,20 +76,64 @@ public class VarNamePvdr extends CompletionProvider<CompletionParameters>
         }
     }
 
+    /** used when index is not available, resolves all `$GLOBALS` usages in the project */
+    private static It<DeepType> scanGlobalsMagicVar(IExprCtx funcCtx, Project proj)
+    {
+        if (!funcCtx.getSearch().globalsVarType.has()) {
+            funcCtx.getSearch().globalsVarType = som(new MemIt<>(It.non()));
+            It<DeepType> tit = getGlobalsMagicVarUsages(proj)
+                .fap(glob -> new VarRes(funcCtx.subCtxEmpty()).resolveRef(glob, false))
+                .wap(asses -> AssRes.assignmentsToTypes(asses));
+            funcCtx.getSearch().globalsVarType = som(tit.mem());
+        }
+        return funcCtx.getSearch().globalsVarType.unw().itr();
+    }
+
+    private static It<DeepType> writesToTypes(IExprCtx funcCtx, String name, L<Variable> writes)
+    {
+        return writes.fap(vari -> {
+            It<DeepType> tit = new VarRes(funcCtx.subCtxEmpty()).resolveRef(vari, false).itr()
+                .wap(asses -> AssRes.assignmentsToTypes(asses));
+            // `$GLOBALS['name'] = ...` gives an array with the var as key
+            return "GLOBALS".equals(vari.getName())
+                ? tit.fap(globt -> Mt.getKeySt(globt, name))
+                : tit;
+        });
+    }
+
+    /**
+     * @return type with global var names as keys - names are taken from index key set, writes
+     *  of a var are looked up and resolved only when the value of that key is requested
+     */
     public static It<DeepType> resolveGlobalsMagicVar(IExprCtx funcCtx, Variable caretVar)
     {
         return funcCtx.getProject()
             .flt(proj -> isGlobalContext(caretVar))
-            .fap(proj -> {
-                if (!funcCtx.getSearch().globalsVarType.has()) {
-                    funcCtx.getSearch().globalsVarType = som(new MemIt<>(It.non()));
-                    It<DeepType> tit = getGlobalsMagicVarUsages(proj)
-                        .fap(glob -> new VarRes(funcCtx.subCtxEmpty()).resolveRef(glob, false))
-                        .wap(asses -> AssRes.assignmentsToTypes(asses));
-                    funcCtx.getSearch().globalsVarType = som(tit.mem());
-                }
-                return funcCtx.getSearch().globalsVarType.unw();
-            });
+            .fap(proj -> GlobalWriteIndex.getNames(proj).uni(
+                names -> {
+                    DeepType globt = new DeepType(caretVar, PhpType.ARRAY);
+                    names.fch(name -> globt.addKey(name, caretVar)
+                        .addType(() -> new Mt(GlobalWriteIndex.findWrites(proj, name)
+                            .fap(writes -> writesToTypes(funcCtx, name, writes))), PhpType.MIXED));
+                    return It(som(globt));
+                },
+                () -> scanGlobalsMagicVar(funcCtx, proj)
+            ));
+    }
+
+    /** @return type of `$name` written with `global $name` or as `$GLOBALS['name']` */
+    public static It<DeepType> resolveGlobalVar(IExprCtx funcCtx, Variable caretVar)
+    {
+        String name = caretVar.getName();
+        return funcCtx.getProject()
+            .flt(proj -> isGlobalContext(caretVar))
+            // a write may be added in any file
+            .thn(proj -> funcCtx.addProjectDependency())
+            .fap(proj -> GlobalWriteIndex.findWrites(proj, name).uni(
+                writes -> writesToTypes(funcCtx, name, writes),
+                () -> scanGlobalsMagicVar(funcCtx, proj)
+                    .fap(globt -> Mt.getKeySt(globt, name))
+            ));
     }
 
     private static It<FunctionReference> getCallsBefore(Variable caretVar)
@@ -166,9 +213,16 @@ public class VarNamePvdr extends CompletionProvider<CompletionParameters>
     {
         return opt(psi.getParent())
             .fop(toCast(VariableImpl.class))
-            .fap(lit -> resolve(lit, false)
-                .fap(globt -> globt.keys)
-                .flt(k -> k.keyType.getNames().any(n -> n.equals(lit.getName())))
-                .map(t -> t.definition));
+            .fap(lit -> It.cnc(
+                // keys made from index names point to the caret var itself
+                som(lit).flt(v -> isGlobalContext(v))
+                    .fap(v -> GlobalWriteIndex.findWrites(v.getProject(), v.getName()))
+                    .fap(writes -> writes.map(vari -> (PsiElement)vari)),
+                resolve(lit, false)
+                    .fap(globt -> globt.keys)
+                    .flt(k -> k.keyType.getNames().any(n -> n.equals(lit.getName())))
+                    .map(t -> t.definition)
+                    .flt(def -> def != lit)
+            ));
     }
 }
@@ -0,0 +1,43 @@
+package org.klesun.deep_assoc_completion.contexts;
+
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+
+import java.util.Iterator;
+
+/**
+ * calls the callback when iteration is interrupted by cancellation (user typed
+ * further, so completion was discarded) - source is likely in a broken state then
+ *
+ * kept next to SearchCtx rather than in org.klesun.lang.iterators, since
+ * the iterators there do not depend on IDEA's progress management
+ */
+public class CancelIterator<A> implements Iterator<A> {
+    private final Iterator<A> sourceIt;
+    private final Runnable onCancel;
+
+    public CancelIterator(Iterator<A> sourceIt, Runnable onCancel) {
+        this.sourceIt = sourceIt;
+        this.onCancel = onCancel;
+    }
+
+    public boolean hasNext() {
+        try {
+            // taking next value from source may take a while
+            ProgressManager.checkCanceled();
+            return sourceIt.hasNext();
+        } catch (ProcessCanceledException exc) {
+            onCancel.run();
+            throw exc;
+        }
+    }
+
+    public A next() {
+        try {
+            return sourceIt.next();
+        } catch (ProcessCanceledException exc) {
+            onCancel.run();
+            throw exc;
+        }
+    }
+}
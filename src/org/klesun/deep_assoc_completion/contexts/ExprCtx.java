@@ -10,6 +10,7 @@ import com.jetbrains.php.lang.psi.elements.PhpExpression;
 import com.jetbrains.php.lang.psi.elements.impl.FieldReferenceImpl;
 import com.jetbrains.php.lang.psi.resolve.types.PhpType;
 import org.klesun.deep_assoc_completion.structures.DeepType;
+import org.klesun.deep_assoc_completion.structures.PsiSig;
 import org.klesun.lang.It;
 import org.klesun.lang.*;
 
@@ -27,16 +28,26 @@ public class ExprCtx implements IExprCtx {
     final private FuncCtx funcCtx;
     final public PsiElement expr;
     final public Opt<ExprCtx> parent;
+    // chain of expressions from search root to this one, for recursion check
+    final ExprTrail trail;
+    // recorded only in debug mode, otherwise whole expression tree of the
+    // search would stay in memory - see SearchCtx.getRecentExprs() instead
     final public L<ExprCtx> children = list();
     public boolean doNotCache = false;
     public Opt<Integer> typeCnt = non();
+    // true if resolution of this or any sub-expression was cut by a limit, so the
+    // result must be resolved again if search is resumed and not kept in TypeCache
+    private boolean incomplete = false;
+    // set by SearchCtx when this context resolved a cached expression
+    PsiSig cachedSig = null;
+    Iterable<DeepType> cachedResult = null;
 
     private ExprCtx(FuncCtx funcCtx, PsiElement expr, int depth, Opt<ExprCtx> parent) {
         this.funcCtx = funcCtx;
         this.expr = expr;
         this.depth = depth;
         this.parent = parent;
-
+        this.trail = ExprTrail.push(parent.map(p -> p.trail).def(null), expr);
     }
 
     public ExprCtx(FuncCtx funcCtx, PsiElement expr, int depth) {
@@ -47,10 +58,16 @@ public class ExprCtx implements IExprCtx {
         return funcCtx;
     }
 
+    FuncCtx getFuncCtx() {
+        return funcCtx;
+    }
+
     private ExprCtx subExpr(PsiElement expr, FuncCtx funcCtx) {
         ExprCtx nextCtx = new ExprCtx(funcCtx, expr, depth + 1, som(this));
         nextCtx.doNotCache = this.doNotCache;
-        children.add(nextCtx);
+        if (funcCtx.getSearch().debug) {
+            children.add(nextCtx);
+        }
         return nextCtx;
     }
 
@@ -131,4 +148,39 @@ public class ExprCtx implements IExprCtx {
     {
         return depth;
     }
+
+    public void addDependency(PsiElement psi)
+    {
+        funcCtx.getSearch().addDependency(this, psi);
+    }
+
+    public void addProjectDependency()
+    {
+        funcCtx.getSearch().addProjectDependency(this);
+    }
+
+    public boolean isIncomplete()
+    {
+        return incomplete;
+    }
+
+    /** mark this expression and all parents as not completely resolved */
+    public void markIncomplete()
+    {
+        funcCtx.getSearch().partialResults++;
+        ExprCtx ctx = this;
+        while (ctx != null && !ctx.incomplete) {
+            ctx.incomplete = true;
+            if (ctx.cachedSig != null) {
+                ctx.funcCtx.getSearch().addIncomplete(ctx);
+            }
+            ExprCtx parent = ctx.parent.def(null);
+            if (parent != null && ctx.doNotCache && !parent.doNotCache) {
+                // limitResolveDepth() cuts the depth on purpose, it would
+                // be same in any search, so it does not affect the parent
+                break;
+            }
+            ctx = parent;
+        }
+    }
 }
@@ -0,0 +1,96 @@
+package org.klesun.deep_assoc_completion.contexts;
+
+import com.intellij.psi.PsiElement;
+
+/**
+ * chain of expressions from the search root to the current one (consecutive
+ * duplicates collapsed), kept incrementally: each ExprCtx links to the trail
+ * of its parent, so checking it for recursion does not require rebuilding it
+ *
+ * every node keeps polynomial hash of the whole chain up to it, which lets
+ * compare any two segments of the chain in O(1) without walking them
+ */
+class ExprTrail
+{
+    final private static long BASE = 1000003;
+
+    final public PsiElement psi;
+    final private ExprTrail prev;
+    // amount of expressions in the chain including this one
+    final private int len;
+    // hash of the chain from root to this node inclusive
+    final private long hash;
+    // bloom filter of psis in the chain - if current psi is not
+    // in the mask of previous, chain can't be a repetition
+    final private long mask;
+
+    private ExprTrail(PsiElement psi, ExprTrail prev)
+    {
+        this.psi = psi;
+        this.prev = prev;
+        this.len = prev == null ? 1 : prev.len + 1;
+        this.hash = (prev == null ? 0 : prev.hash * BASE) + psi.hashCode();
+        this.mask = (prev == null ? 0 : prev.mask) | bit(psi);
+    }
+
+    private static long bit(PsiElement psi)
+    {
+        return 1L << (psi.hashCode() & 63);
+    }
+
+    public static ExprTrail push(ExprTrail prev, PsiElement psi)
+    {
+        if (prev != null && prev.psi.equals(psi)) {
+            return prev;
+        } else {
+            return new ExprTrail(psi, prev);
+        }
+    }
+
+    private static long hashOf(ExprTrail node)
+    {
+        return node == null ? 0 : node.hash;
+    }
+
+    /** compare `len` expressions ending with `a` and ending with `b` */
+    private static boolean sameSegment(ExprTrail a, ExprTrail b, int len)
+    {
+        for (int i = 0; i < len; ++i) {
+            if (!a.psi.equals(b.psi)) {
+                return false;
+            }
+            a = a.prev;
+            b = b.prev;
+        }
+        return true;
+    }
+
+    /**
+     * imagine sequence: a b c d e f g e f g
+     *                           ^_____^_____
+     * I'm not sure this assumption is right, but I'll try to
+     * treat any case where end repeats pre-end as recursion
+     */
+    public boolean isRecursion()
+    {
+        if (prev == null || (prev.mask & bit(psi)) == 0) {
+            return false;
+        }
+        // `slow` is the last node of the segment preceding the
+        // last `period` nodes, `fast` - of the one before it
+        ExprTrail slow = this;
+        ExprTrail fast = this;
+        long pow = 1;
+        for (int period = 1; period <= len / 2; ++period) {
+            slow = slow.prev;
+            fast = fast.prev.prev;
+            pow *= BASE;
+            long lastHash = hash - slow.hash * pow;
+            long preLastHash = slow.hash - hashOf(fast) * pow;
+            if (lastHash == preLastHash && sameSegment(this, slow, period)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
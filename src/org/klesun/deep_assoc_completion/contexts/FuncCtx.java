@@ -10,10 +10,13 @@ import org.klesun.deep_assoc_completion.resolvers.ArrCtorRes;
 import org.klesun.lang.*;
 
 import java.util.HashMap;
+import java.util.TreeSet;
 
 /** a node in called function stack trace with args */
 public class FuncCtx extends Lang implements IFuncCtx
 {
+    // args with more types than that are not worth comparing by shape
+    final private static int MAX_SHAPE_TYPES = 30;
     enum EArgPsiType {DIRECT, ARR, NONE, INDIRECT};
 
     final private Opt<FuncCtx> parent;
@@ -30,6 +33,13 @@ public class FuncCtx extends Lang implements IFuncCtx
     private L<StackTraceElement> debugCtorTrace = L();
 
     private HashMap<Integer, Mt> cachedArgs = new HashMap<>();
+    // key names, string values and classes of the args, see getArgShape()
+    final private Tls.OnDemand<Opt<String>> argShape = Tls.onDemand(() -> makeArgShape());
+    private boolean isMakingArgShape = false;
+    private boolean wasArgShapeReentered = false;
+    private Opt<L<Object>> hashValues = non();
+    private int hash = 0;
+    private Opt<L<Object>> detachedHashValues = non();
 
     public FuncCtx(SearchCtx search)
     {
@@ -243,28 +253,128 @@ public class FuncCtx extends Lang implements IFuncCtx
         return search;
     }
 
-    private L<Object> getHashValues()
+    /** @return non() if there are too many types to compare */
+    private static Opt<String> makeTypesShape(Iterable<DeepType> types)
+    {
+        L<DeepType> typeList = It(types).lmt(MAX_SHAPE_TYPES + 1).arr();
+        if (typeList.size() > MAX_SHAPE_TYPES) {
+            return non();
+        }
+        TreeSet<String> shapes = new TreeSet<>();
+        for (DeepType t: typeList) {
+            TreeSet<String> keyNames = new TreeSet<>(t.keys.fap(k -> k.keyType.getNames()).arr());
+            TreeSet<String> fqns = new TreeSet<>(ArrCtorRes.ideaTypeToFqn(t.briefType));
+            shapes.add(opt(t.stringValue).map(str -> "'" + str + "'").def("")
+                + String.join("|", fqns) + "[" + String.join(",", keyNames) + "]");
+        }
+        return som(String.join(" or ", shapes));
+    }
+
+    /** @return non() if some arg was still being resolved, so its types could be partial */
+    private Opt<String> makeArgShape()
+    {
+        int partialBefore = search.partialResults;
+        isMakingArgShape = true;
+        L<Opt<String>> shapes = list();
+        shapes.add(instGetter.uni(get -> makeTypesShape(get.get().types), () -> som("")));
+        L<Mt> args = list();
+        for (int i = 0; i < argGetters.size(); ++i) {
+            Mt mt = getCached(i, argGetters.get(i));
+            args.add(mt);
+            shapes.add(makeTypesShape(mt.types));
+        }
+        isMakingArgShape = false;
+        boolean wasPartial = search.partialResults != partialBefore
+            || args.any(mt -> mt == Mt.CIRCULAR_REFERENCE)
+            || wasArgShapeReentered;
+        return wasPartial ? non() : shapes.fal(shape -> shape).map(all -> all.str(", "));
+    }
+
+    /**
+     * function context described by abstract types of the args rather than by the call
+     * site, so that result of a helper function called from hundreds of places with
+     * same shape of args was resolved once - at cost of resolving the args right away
+     *
+     * if args were not fully resolved by then (cycle or a limit), context falls back to the call site
+     */
+    private Opt<String> getArgShape()
+    {
+        if (isMakingArgShape) {
+            // hashed during resolution of own args
+            wasArgShapeReentered = true;
+            return non();
+        }
+        return argShape.get();
+    }
+
+    /**
+     * @param framesLeft - how many call sites from the top of the stack are taken into account, negative means all
+     * @param detached - whether parents are included by their values rather than by reference to themselves
+     */
+    private L<Object> getHashValues(int framesLeft, boolean detached)
     {
         L<Object> values = list();
         values.add(argPsiType);
         values.add(clsIdeaType.map(ArrCtorRes::ideaTypeToFqn));
         values.add(hasArgs());
-        if (!hasArgs()) return values;
+        if (!hasArgs() || framesLeft == 0) return values;
+        Opt<String> argShape = search.shareCtxByArgShape ? getArgShape() : non();
+        if (argShape.has()) {
+            values.add(argShape);
+            return values;
+        }
         values.add(uniqueRef);
         if (!uniqueRef.has()) return values;
-        values.add(parent);
+        if (framesLeft < 0) {
+            // whole stack - parent's own memoized hash can be used
+            values.add(detached ? parent.map(par -> par.getDetachedHashValues()) : parent);
+        } else {
+            values.add(parent.map(par -> par.getHashValues(framesLeft - 1, detached)));
+        }
         return values;
     }
 
+    /**
+     * memoized on first use - by then context is fully set up (this type
+     * and such are assigned right after construction), and it is
+     * hashed on every expression, so rebuilding it each time is costly
+     */
+    private L<Object> getHashValues()
+    {
+        if (!hashValues.has()) {
+            L<Object> values = getHashValues(search.callStringDepth, false);
+            hashValues = som(values);
+            hash = values.hashCode();
+        }
+        return hashValues.unw();
+    }
+
+    /**
+     * same values as in hash, but without references to contexts, which keep whole search
+     * in memory, for TypeCache shared between searches - only PSI, names and flags
+     */
+    L<Object> getDetachedHashValues()
+    {
+        if (!detachedHashValues.has()) {
+            detachedHashValues = som(getHashValues(search.callStringDepth, true));
+        }
+        return detachedHashValues.unw();
+    }
+
     public int hashCode()
     {
-        return getHashValues().hashCode();
+        getHashValues();
+        return hash;
     }
 
     public boolean equals(Object thatRaw)
     {
+        if (thatRaw == this) {
+            return true;
+        }
         return Tls.cast(FuncCtx.class, thatRaw)
-            .map(that -> this.getHashValues().equals(that.getHashValues()))
+            .map(that -> this.hashCode() == that.hashCode()
+                && this.getHashValues().equals(that.getHashValues()))
             .def(false);
     }
 
@@ -43,6 +43,10 @@ public interface IExprCtx {
 
     It<DeepType> findExprType(PhpExpression expr);
     It<DeepType> limitResolveDepth(int depthLimit, PhpExpression expr);
+    /** remember that resolved types depend on contents of the file this psi is in */
+    void addDependency(PsiElement psi);
+    /** remember that resolved types were found by a project-wide lookup, so a change in any file may affect them */
+    void addProjectDependency();
 
 
     /**
@@ -0,0 +1,42 @@
+package org.klesun.deep_assoc_completion.contexts;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import org.klesun.lang.Lang;
+import org.klesun.lang.Opt;
+
+/**
+ * search of the last key completion in the project, kept so that explicit Ctrl+Space
+ * after the auto-popup on the same caret continued it rather than starting over
+ *
+ * SearchCtx is not thread-safe, so it is handed to one completion at a time: it is
+ * taken out when completion starts and put back only when it finished, so a search
+ * interrupted by cancellation (with its caches in a broken state) is just dropped
+ */
+public class ResumableSearch extends Lang
+{
+    // file, caret offset and document stamp
+    private Opt<T2<String, SearchCtx>> last = non();
+
+    public static Opt<ResumableSearch> inst(Project project)
+    {
+        return opt(ServiceManager.getService(project, ResumableSearch.class));
+    }
+
+    /** @return the kept search if it was made for same key, not deeper than requested and no file it read changed */
+    public synchronized Opt<SearchCtx> take(String key, int depth)
+    {
+        Opt<SearchCtx> taken = last
+            .flt(tup -> tup.a.equals(key))
+            .flt(tup -> tup.b.maxDepth <= depth)
+            .flt(tup -> tup.b.isUpToDate())
+            .map(tup -> tup.b);
+        last = non();
+        return taken;
+    }
+
+    public synchronized void putBack(String key, SearchCtx search)
+    {
+        last = som(T2(key, search));
+    }
+}
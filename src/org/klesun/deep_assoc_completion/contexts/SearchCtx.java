@@ -1,6 +1,8 @@
 package org.klesun.deep_assoc_completion.contexts;
 
 import com.intellij.codeInsight.completion.CompletionParameters;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
@@ -11,14 +13,36 @@ import org.klesun.deep_assoc_completion.entry.DeepSettings;
 import org.klesun.deep_assoc_completion.resolvers.MainRes;
 import org.klesun.deep_assoc_completion.structures.DeepType;
 import org.klesun.deep_assoc_completion.structures.PsiSig;
+import org.klesun.deep_assoc_completion.structures.ShapeTable;
+import org.klesun.deep_assoc_completion.structures.TypeSnap;
 import org.klesun.lang.*;
 
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.Set;
 
 public class SearchCtx extends Lang
 {
+    // rounds of re-resolution of a recursive expression after the first one
+    final private static int MAX_CYCLE_ROUNDS = 3;
+    // expressions kept for the error report when tree is not recorded
+    final private static int MAX_RECENT_EXPRS = 100;
+    // expressions with more sub-expressions are not put to TypeCache
+    final private static int MAX_DEPENDENCY_EXPRS = 5000;
+
+    /** what types of a cached expression were resolved from, not including expressions it took from cache */
+    private static class Deps
+    {
+        final Set<PsiSig> subSigs = new HashSet<>();
+        final Map<PsiFile, Long> fileToStamp = new HashMap<>();
+        boolean isProjectWide = false;
+    }
+
     // parametrized fields
     private long startTime = System.nanoTime();
     private long lastReportTime = System.nanoTime();
@@ -27,22 +51,66 @@ public class SearchCtx extends Lang
     public boolean debug = DEBUG_DEFAULT;
     private Opt<Double> timeout = opt(null);
     final public Opt<Project> project;
+    // how many call sites of the stack distinguish function contexts in
+    // cache, lower value means more reuse, but less precise arg types
+    final public int callStringDepth;
+    // whether function contexts with same shape of args are same in cache
+    final public boolean shareCtxByArgShape;
     // for performance measurement
     private int expressionsResolved = 0;
+    // how many times some expression was cut by a limit or got a partial
+    // result of a cycle, see FuncCtx.makeArgShape()
+    int partialResults = 0;
     // direct type cache
     final private Map<PsiSig, Iterable<DeepType>> ctxToExprToResult = new HashMap<>();
+    // cached expressions that were cut by a limit or got a partial result of a cycle, needed
+    // to pass their incompleteness to whoever takes them from cache and to drop them on resume,
+    // complete ones are not kept, so that their contexts did not stay in memory with the cache
+    final private Map<PsiSig, ExprCtx> incompleteOwners = new HashMap<>();
+    // expressions which resolvers are being constructed right now
+    final private Set<PsiSig> inProgress = new HashSet<>();
+    // expressions that were needed during their own resolution since last round
+    final private Set<PsiSig> cycleHits = new HashSet<>();
+    // array shapes of finished expressions, to use same
+    // DeepType for equal shapes from different call paths
+    final private ShapeTable shapes = new ShapeTable();
+    // direct type cache shared between searches
+    final private Opt<TypeCache> typeCache;
+    final private long modCountAtStart;
+    final private long outOfCodeBlockCountAtStart;
+    // expressions finished without being cut, to be put to TypeCache
+    // when search is over, since their values are resolved lazily
+    final private Map<PsiSig, TypeCache.Key> finished = new HashMap<>();
+    // files and expressions each cached expression was resolved from, kept as
+    // graph edges rather than copied to parents, since types are resolved lazily
+    final private Map<PsiSig, Deps> sigToDeps = new HashMap<>();
+    // all files read in this search, to tell whether it can be resumed
+    final private Map<PsiFile, Long> readFiles = new HashMap<>();
+    private boolean wasProjectWide = false;
     // usage type cache
     final public Map<PhpExpression, MemIt<DeepType>> exprToUsageResult = new HashMap<>();
     public Opt<Integer> overrideMaxExpr = non();
+    // set while a branch of fair() is pulled and other branches are waiting for it
+    private Opt<Integer> pullExprLimit = non();
+    // expressions cut by pullExprLimit during current pull
+    final private L<ExprCtx> pullCutExprs = list();
     final public Map<PsiFile, Collection<FieldReferenceImpl>> fileToFieldRefs = new HashMap<>();
     public Opt<MemIt<DeepType>> globalsVarType = non();
     public boolean isMain = false;
 
     public Opt<ExprCtx> currentExpr = non();
+    final private ArrayDeque<ExprCtx> recentExprs = new ArrayDeque<>();
 
     public SearchCtx(Project project)
     {
         this.project = opt(project);
+        this.typeCache = this.project.fop(TypeCache::inst);
+        this.modCountAtStart = typeCache.map(cache -> cache.getModCount()).def(-1L);
+        this.outOfCodeBlockCountAtStart = typeCache.map(cache -> cache.getOutOfCodeBlockCount()).def(-1L);
+        this.callStringDepth = this.project
+            .map(proj -> DeepSettings.inst(proj).callStringDepth).def(-1);
+        this.shareCtxByArgShape = this.project
+            .map(proj -> DeepSettings.inst(proj).shareFuncCtxByArgShape).def(false);
     }
 
     public SearchCtx(CompletionParameters parameters)
@@ -81,35 +149,130 @@ public class SearchCtx extends Lang
         ).def(10000);
     }
 
-    private static <T> boolean endsWith(L<T> superList, L<T> subList)
+    private int getBranchExpressionBudget()
+    {
+        return project
+            .map(project -> DeepSettings.inst(project).branchExpressionBudget)
+            .def(1500);
+    }
+
+    /** @return function that restores the previous limit and tells whether the pull was cut */
+    private S<Boolean> limitPull(int limit)
+    {
+        Opt<Integer> prev = pullExprLimit;
+        L<ExprCtx> prevCutExprs = L(pullCutExprs).arr();
+        pullExprLimit = som(prev.map(p -> Math.min(p, limit)).def(limit));
+        pullCutExprs.clear();
+        return () -> {
+            boolean wasCut = pullCutExprs.size() > 0;
+            pullCutExprs.fch(exprCtx -> dropCutAncestors(exprCtx));
+            pullExprLimit = prev;
+            // an outer pull is also cut if a pull inside it was
+            pullCutExprs.addAll(prevCutExprs);
+            return wasCut;
+        };
+    }
+
+    /**
+     * the branch is iterated again after a cut pull, so expressions that finished with a
+     * partial result because of the cut must be resolved again rather than taken from cache,
+     * expressions still being iterated are outside of the branch - they continue after the pull
+     */
+    private void dropCutAncestors(ExprCtx cut)
     {
-        for (int i = 0; i < subList.size(); ++i) {
-            if (i >= superList.size() || !superList.get(-i - 1).equals(subList.get(-i - 1))) {
-                return false;
+        for (ExprCtx ctx = cut.parent.def(null); ctx != null; ctx = ctx.parent.def(null)) {
+            if (ctx.cachedSig != null && isOwner(ctx.cachedSig, ctx)) {
+                if (isBeingResolved(ctx.cachedSig, ctx.cachedResult)) {
+                    break;
+                }
+                dropFromCache(ctx.cachedSig);
             }
         }
-        return true;
     }
 
-    private static boolean isRecursion(L<PsiElement> psiTrace)
+    /**
+     * interleave types from competing sources, so that one exploding source
+     * did not spend whole expression limit before others yield anything
+     *
+     * a single pull that exceeds the budget while other sources wait is cut, the source
+     * is postponed then and iterated again once other sources are done, see FairIterator
+     */
+    public <T> It<T> fair(Iterable<? extends Iterable<T>> branches)
     {
-        // imagine sequence: a b c d e f g e f g
-        //                           ^_____^_____
-        // I'm not sure this assumption is right, but I'll try to
-        // treat any case where end repeats pre-end as recursion
-        for (int i = 0; i < psiTrace.size() / 2; ++i) {
-            L<PsiElement> subList = psiTrace.sub(psiTrace.size() - i * 2 - 2, i + 1);
-            if (endsWith(psiTrace, subList)) {
-                return true;
+        return It.fair(() -> expressionsResolved, getBranchExpressionBudget(), this::limitPull, branches);
+    }
+
+    private Opt<Iterable<DeepType>> takeFromCache(PsiSig sig)
+    {
+        return opt(ctxToExprToResult.get(sig));
+    }
+
+    private Opt<L<DeepType>> takeFromProjectCache(PhpExpression expr, ExprCtx exprCtx, PsiSig sig)
+    {
+        return typeCache.fop(cache -> TypeCache.Key.make(expr, exprCtx)
+            .fop(key -> cache.get(key))
+            .map(entry -> {
+                Deps deps = getDeps(sig);
+                entry.fileToStamp.forEach((file, stamp) -> {
+                    deps.fileToStamp.putIfAbsent(file, stamp);
+                    readFiles.putIfAbsent(file, stamp);
+                });
+                if (entry.modCount.has()) {
+                    deps.isProjectWide = true;
+                    wasProjectWide = true;
+                }
+                return entry.snaps.map(snap -> snap.restore()).arr();
+            }));
+    }
+
+    private Deps getDeps(PsiSig sig)
+    {
+        return sigToDeps.computeIfAbsent(sig, s -> new Deps());
+    }
+
+    /** @return signature of the closest expression in the chain that is cached */
+    private static Opt<PsiSig> findOwnerSig(Opt<ExprCtx> from)
+    {
+        for (ExprCtx ctx = from.def(null); ctx != null; ctx = ctx.parent.def(null)) {
+            if (ctx.cachedSig != null) {
+                return som(ctx.cachedSig);
             }
         }
-        return false;
+        return non();
     }
 
-    private Opt<Iterable<DeepType>> takeFromCache(IExprCtx ctx, PhpExpression expr)
+    private void addProjectDependency(Opt<PsiSig> ownerSig)
     {
-        PsiSig sig = new PsiSig(expr, ctx);
-        return opt(ctxToExprToResult.get(sig));
+        wasProjectWide = true;
+        ownerSig.thn(sig -> getDeps(sig).isProjectWide = true);
+    }
+
+    private void addFileDependency(Opt<PsiSig> ownerSig, ExprCtx exprCtx, PsiElement psi)
+    {
+        // psi in the copy of the file made for completion is taken as psi in the original file
+        opt(exprCtx.getRealPsi(psi).getContainingFile())
+            .map(file -> file.getOriginalFile())
+            .thn(file -> {
+                if (file.getVirtualFile() == null) {
+                    // not a real file, modification stamps can't tell whether it changed
+                    addProjectDependency(ownerSig);
+                } else {
+                    long stamp = file.getModificationStamp();
+                    readFiles.putIfAbsent(file, stamp);
+                    ownerSig.thn(sig -> getDeps(sig).fileToStamp.putIfAbsent(file, stamp));
+                }
+            });
+    }
+
+    /** called by ExprCtx when resolver reads something besides the expressions it resolves */
+    void addDependency(ExprCtx exprCtx, PsiElement psi)
+    {
+        addFileDependency(findOwnerSig(som(exprCtx)), exprCtx, psi);
+    }
+
+    void addProjectDependency(ExprCtx exprCtx)
+    {
+        addProjectDependency(findOwnerSig(som(exprCtx)));
     }
 
     public static String formatPsi(PsiElement expr)
@@ -119,11 +282,36 @@ public class SearchCtx extends Lang
         return Tls.singleLine(expr.getText(), 120) + " - " + expr.getContainingFile().getName() + ":" + phpLineNum;
     }
 
-    private void putToCache(IExprCtx ctx, PhpExpression expr, Iterable<DeepType> result)
+    private void putToCache(PsiSig sig, ExprCtx owner, Iterable<DeepType> result)
     {
-        PsiSig sig = new PsiSig(expr, ctx);
         ctxToExprToResult.remove(sig);
         ctxToExprToResult.put(sig, result);
+        incompleteOwners.remove(sig);
+        owner.cachedSig = sig;
+        owner.cachedResult = result;
+        if (owner.isIncomplete()) {
+            incompleteOwners.put(sig, owner);
+        }
+    }
+
+    private boolean isOwner(PsiSig sig, ExprCtx exprCtx)
+    {
+        return exprCtx.cachedResult != null
+            && ctxToExprToResult.get(sig) == exprCtx.cachedResult;
+    }
+
+    private void dropFromCache(PsiSig sig)
+    {
+        ctxToExprToResult.remove(sig);
+        incompleteOwners.remove(sig);
+    }
+
+    /** called by ExprCtx when it is marked incomplete after its result was cached */
+    void addIncomplete(ExprCtx owner)
+    {
+        if (owner.cachedSig != null && isOwner(owner.cachedSig, owner)) {
+            incompleteOwners.put(owner.cachedSig, owner);
+        }
     }
 
     private boolean shouldCache(ExprCtx exprCtx)
@@ -131,21 +319,147 @@ public class SearchCtx extends Lang
         return !exprCtx.doNotCache;
     }
 
-    private static L<PsiElement> getExprChain(ExprCtx ctx)
+    /** types resolved so far must not be taken as complete if user cancelled the search */
+    private void dropCancelled(PsiSig sig, ExprCtx exprCtx)
+    {
+        exprCtx.markIncomplete();
+        inProgress.remove(sig);
+        if (isOwner(sig, exprCtx)) {
+            dropFromCache(sig);
+        }
+    }
+
+    private static boolean isDescendant(ExprCtx ctx, ExprCtx ancestor)
     {
-        L<PsiElement> fromEnd = list();
-        while (ctx != null) {
-            if (!fromEnd.lst().equals(som(ctx.expr))) {
-                fromEnd.add(ctx.expr);
+        for (ExprCtx parent = ctx.parent.def(null); parent != null && parent.depth >= ancestor.depth; parent = parent.parent.def(null)) {
+            if (parent == ancestor) {
+                return true;
             }
-            ctx = ctx.parent.def(null);
         }
-        return fromEnd.rvr();
+        return false;
+    }
+
+    /**
+     * sub-expressions that took a partial result of the cycle must be resolved
+     * again in next round, only incomplete expressions are checked, not whole cache
+     */
+    private void dropIncompleteDescendants(ExprCtx ancestor)
+    {
+        L(incompleteOwners.entrySet())
+            .flt(e -> isDescendant(e.getValue(), ancestor))
+            .map(e -> e.getKey()).arr()
+            .fch(sig -> dropFromCache(sig));
+    }
+
+    /** @return true if type has a definition or a key name not met in previous rounds */
+    private static boolean addKeys(Map<PsiElement, Set<String>> defToKeys, DeepType t)
+    {
+        boolean added = !defToKeys.containsKey(t.definition);
+        Set<String> keys = defToKeys.computeIfAbsent(t.definition, def -> new HashSet<>());
+        for (DeepType.Key k: t.keys) {
+            for (String name: k.keyType.getNames()) {
+                added = keys.add(name) || added;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * when expression was needed during its own resolution (recursive function), the inner
+     * usage got only the types resolved by that moment - rather than giving up on the cycle,
+     * expression is resolved again with these types as the seed, till no new types appear
+     */
+    private It<DeepType> resolveCycleRounds(PhpExpression expr, ExprCtx exprCtx, PsiSig sig, L<DeepType> resolved, int round, int prevCnt)
+    {
+        return new It<>(() -> {
+            boolean wasHit = cycleHits.remove(sig);
+            if (!wasHit || round > MAX_CYCLE_ROUNDS || resolved.size() == prevCnt) {
+                return It.<DeepType>non().iterator();
+            }
+            int cnt = resolved.size();
+            dropIncompleteDescendants(exprCtx);
+            // types of each round are new objects, so only the ones that
+            // bring a key not met before for their definition are added
+            Map<PsiElement, Set<String>> defToKeys = new HashMap<>();
+            resolved.fch(t -> addKeys(defToKeys, t));
+            It<DeepType> roundTit = new MainRes(exprCtx).resolve(expr)
+                .flt(t -> addKeys(defToKeys, t));
+            return It.cnc(roundTit, resolveCycleRounds(expr, exprCtx, sig, resolved, round + 1, cnt)).iterator();
+        });
+    }
+
+    private Iterable<DeepType> resolveAndCache(PhpExpression expr, ExprCtx exprCtx, PsiSig sig)
+    {
+        if (shouldCache(exprCtx)) {
+            putToCache(sig, exprCtx, list());
+            inProgress.add(sig);
+        }
+        L<DeepType> resolved = list();
+        It<DeepType> tit;
+        try {
+            tit = It.cnc(
+                    new MainRes(exprCtx).resolve(expr),
+                    // iterated only after the first round is over
+                    shouldCache(exprCtx) ? resolveCycleRounds(expr, exprCtx, sig, resolved, 1, 0) : It.non()
+                )
+                //.lmt(1000) // .lmt() is just a safety measure, it should not be needed if everything works properly
+                .unq() // .unq() before caching is important since types taken from cache would grow in count exponentially otherwise
+                .btw(t -> resolved.add(t))
+                .thn(cnt -> compactCached(sig, exprCtx, resolved));
+        } catch (ProcessCanceledException exc) {
+            dropCancelled(sig, exprCtx);
+            throw exc;
+        }
+        Iterable<DeepType> mit = new MemIt<>(() -> new CancelIterator<>(tit.iterator(), () -> dropCancelled(sig, exprCtx)));
+        if (shouldCache(exprCtx)) {
+            putToCache(sig, exprCtx, mit);
+            inProgress.remove(sig);
+        }
+        return mit;
+    }
+
+    /**
+     * unq() alone is not enough when equal shapes are built again through other call paths, so
+     * once expression is fully resolved, further lookups get the types with known shapes reused
+     */
+    private void compactCached(PsiSig sig, ExprCtx exprCtx, L<DeepType> resolved)
+    {
+        if (shouldCache(exprCtx) && !exprCtx.isIncomplete() && isOwner(sig, exprCtx)) {
+            Set<DeepType> met = Collections.newSetFromMap(new IdentityHashMap<>());
+            L<DeepType> compacted = resolved.map(t -> shapes.intern(t)).flt(t -> met.add(t)).arr();
+            // stored even if nothing was merged, so that persistTypes() knew it is finished
+            putToCache(sig, exprCtx, compacted);
+            TypeCache.Key.make(exprCtx.expr, exprCtx)
+                .thn(key -> finished.put(sig, key));
+        }
+    }
+
+    private boolean isBeingResolved(PsiSig sig, Iterable<DeepType> cached)
+    {
+        return inProgress.contains(sig)
+            || cached instanceof MemIt && ((MemIt<DeepType>) cached).isNexting();
+    }
+
+    /** @return closest parent that resolves same expression and owns its result in cache */
+    private Opt<ExprCtx> findRecursionOwner(PhpExpression expr, ExprCtx exprCtx)
+    {
+        for (ExprCtx ctx = exprCtx.parent.def(null); ctx != null; ctx = ctx.parent.def(null)) {
+            if (ctx.expr == expr && ctx.cachedSig != null && isOwner(ctx.cachedSig, ctx)) {
+                return som(ctx);
+            }
+        }
+        return non();
     }
 
     public Iterable<DeepType> findExprType(PhpExpression expr, ExprCtx exprCtx)
     {
+        // throws if user typed further and completion was discarded
+        ProgressManager.checkCanceled();
         currentExpr = som(exprCtx);
+        if (recentExprs.size() >= MAX_RECENT_EXPRS) {
+            recentExprs.removeFirst();
+        }
+        recentExprs.addLast(exprCtx);
 
         long time = System.nanoTime();
         double seconds = (time - startTime) / 1000000000.0;
@@ -155,35 +469,55 @@ public class SearchCtx extends Lang
         }
 
         if (exprCtx.depth > maxDepth) {
+            exprCtx.markIncomplete();
             return It.non();
         }
-        L<PsiElement> chain = getExprChain(exprCtx);
         if (++expressionsResolved > getMaxExpressions()) {
+            exprCtx.markIncomplete();
+            return It.non();
+        } else if (pullExprLimit.any(limit -> expressionsResolved > limit)) {
+            exprCtx.markIncomplete();
+            pullCutExprs.add(exprCtx);
             return It.non();
         } else if (timeout.flt(tout -> seconds > tout).has()) {
+            exprCtx.markIncomplete();
             return It.non();
         }
 
-        Opt<Iterable<DeepType>> result = takeFromCache(exprCtx, expr);
+        PsiSig sig = new PsiSig(expr, exprCtx);
+        findOwnerSig(exprCtx.parent).thn(ownerSig -> getDeps(ownerSig).subSigs.add(sig));
+        Opt<Iterable<DeepType>> result = takeFromCache(sig);
         if (result.has()) {
+            opt(incompleteOwners.get(sig)).flt(owner -> owner != exprCtx)
+                .thn(owner -> exprCtx.markIncomplete());
+            if (isBeingResolved(sig, result.unw())) {
+                // circular reference - only the types resolved so far are available,
+                // outer resolution will do another round with them as the seed
+                exprCtx.markIncomplete();
+                cycleHits.add(sig);
+            }
             if (debug) {
                 //System.out.println(indent + "<< TAKING RESULT FROM CACHE");
             }
-        } else if (isRecursion(chain)) {
-            return It.non();
-        } else {
-            if (shouldCache(exprCtx)) {
-                putToCache(exprCtx, expr, list());
+        } else if (exprCtx.trail.isRecursion()) {
+            // function contexts differ on each level of recursion when they are not shared by
+            // callStringDepth, so outer resolution of same expression has other sig - types it
+            // resolved so far are the seed, and it does another round with what was found by them
+            exprCtx.markIncomplete();
+            Opt<ExprCtx> owner = findRecursionOwner(expr, exprCtx);
+            if (!owner.has()) {
+                return It.non();
             }
-
-            It<DeepType> tit = new MainRes(exprCtx).resolve(expr)
-                //.lmt(1000) // .lmt() is just a safety measure, it should not be needed if everything works properly
-                .unq() // .unq() before caching is important since types taken from cache would grow in count exponentially otherwise
-                ;
-            Iterable<DeepType> mit = new MemIt<>(tit);
-            result = som(mit);
-            if (shouldCache(exprCtx)) {
-                result.thn(mt -> putToCache(exprCtx, expr, mit));
+            cycleHits.add(owner.unw().cachedSig);
+            result = som(owner.unw().cachedResult);
+        } else {
+            Opt<L<DeepType>> persisted = shouldCache(exprCtx) ? takeFromProjectCache(expr, exprCtx, sig) : non();
+            if (persisted.has()) {
+                result = som(persisted.unw());
+                putToCache(sig, exprCtx, persisted.unw());
+            } else {
+                addFileDependency(som(sig), exprCtx, expr);
+                result = som(resolveAndCache(expr, exprCtx, sig));
             }
         }
 
@@ -197,6 +531,113 @@ public class SearchCtx extends Lang
             ;
     }
 
+    /**
+     * continue the search with a higher depth limit, like when user presses Ctrl+Space
+     * after the auto-popup: types that were not cut by a limit are kept, while the
+     * incomplete ones are dropped to be resolved again - they are the search frontier
+     */
+    public SearchCtx resume(int depth)
+    {
+        this.maxDepth = Math.max(maxDepth, depth);
+        this.startTime = System.nanoTime();
+        this.expressionsResolved = 0;
+        this.overrideMaxExpr = non();
+        this.pullExprLimit = non();
+        this.pullCutExprs.clear();
+        this.currentExpr = non();
+        // left by a resolution the previous completion was cancelled in
+        inProgress.clear();
+        cycleHits.clear();
+        recentExprs.clear();
+        L(incompleteOwners.keySet()).arr()
+            .fch(sig -> ctxToExprToResult.remove(sig));
+        incompleteOwners.clear();
+        // not tracked whether they were cut by limits
+        exprToUsageResult.clear();
+        globalsVarType = non();
+        return this;
+    }
+
+    /**
+     * put types of expressions this search resolved completely to the cache shared between
+     * searches - called when search is over, by then values of the keys that completion
+     * needed are resolved, and types with a value that is still not are not put
+     */
+    public void persistTypes()
+    {
+        Map<PsiSig, Deps> sigToAllDeps = new HashMap<>();
+        typeCache.thn(cache -> {
+            for (Map.Entry<PsiSig, TypeCache.Key> e: finished.entrySet()) {
+                Iterable<DeepType> cached = ctxToExprToResult.get(e.getKey());
+                if (cached instanceof L && !incompleteOwners.containsKey(e.getKey())) {
+                    TypeSnap.take(cached).thn(snaps -> collectDeps(e.getKey(), sigToAllDeps)
+                        .thn(deps -> cache.put(e.getValue(), new TypeCache.Entry(
+                            snaps, deps.fileToStamp, outOfCodeBlockCountAtStart,
+                            deps.isProjectWide ? som(modCountAtStart) : non()
+                        ))));
+                }
+            }
+        });
+        finished.clear();
+    }
+
+    /**
+     * @param sigToAllDeps - results of previous calls, each includes all sub-expressions
+     * @return files of the expression and of all expressions it took types from, non() if there are too many
+     */
+    private Opt<Deps> collectDeps(PsiSig root, Map<PsiSig, Deps> sigToAllDeps)
+    {
+        Deps result = new Deps();
+        Set<PsiSig> visited = new HashSet<>();
+        ArrayDeque<PsiSig> stack = new ArrayDeque<>();
+        visited.add(root);
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            if (visited.size() > MAX_DEPENDENCY_EXPRS) {
+                return non();
+            }
+            PsiSig sig = stack.pop();
+            Deps allDeps = sigToAllDeps.get(sig);
+            Deps deps = allDeps != null ? allDeps : sigToDeps.get(sig);
+            if (deps == null) {
+                continue;
+            }
+            deps.fileToStamp.forEach(result.fileToStamp::putIfAbsent);
+            result.isProjectWide = result.isProjectWide || deps.isProjectWide;
+            if (allDeps == null) {
+                for (PsiSig subSig: deps.subSigs) {
+                    if (visited.add(subSig)) {
+                        stack.push(subSig);
+                    }
+                }
+            }
+        }
+        sigToAllDeps.put(root, result);
+        return som(result);
+    }
+
+    /**
+     * whether types kept in this search are still valid - no file it read
+     * changed, so it can be continued on next completion, see ResumableSearch
+     */
+    public boolean isUpToDate()
+    {
+        return TypeCache.isUpToDate(readFiles)
+            && typeCache.all(cache -> cache.getOutOfCodeBlockCount() == outOfCodeBlockCountAtStart
+                && (!wasProjectWide || cache.getModCount() == modCountAtStart));
+    }
+
+    public Opt<TypeCache> getTypeCache()
+    {
+        return typeCache;
+    }
+
+    /** last resolved expressions in order they were requested, for debug */
+    public L<ExprCtx> getRecentExprs()
+    {
+        return L(recentExprs);
+    }
+
     public int getExpressionsResolved()
     {
         return this.expressionsResolved;
@@ -0,0 +1,191 @@
+package org.klesun.deep_assoc_completion.contexts;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiModificationTracker;
+import org.klesun.deep_assoc_completion.structures.TypeSnap;
+import org.klesun.lang.It;
+import org.klesun.lang.L;
+import org.klesun.lang.Lang;
+import org.klesun.lang.Opt;
+import org.klesun.lang.Tls;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * project-level expression type cache that outlives a single SearchCtx, so that
+ * function return shapes resolved on one keystroke were not resolved again on the next
+ *
+ * neither keys nor values reference the search they were resolved in: function context
+ * is kept as its hash values and types as snapshots, see TypeSnap - each search gets
+ * own DeepType-s restored from them, so no lazy getter runs in a finished search
+ *
+ * only expressions resolved completely (not cut by a limit or a circular reference)
+ * with all their values already resolved get here, an entry is dropped when one of the
+ * files it was resolved from changes, or when a declaration is added anywhere, since
+ * it could not be seen in files that were not read, see getOutOfCodeBlockCount()
+ */
+public class TypeCache extends Lang
+{
+    // guard against memory overflow - every entry keeps PSI
+    final private static int MAX_ENTRIES = 5000;
+
+    /** expression in a function context, like PsiSig, but without the context itself */
+    static class Key
+    {
+        final private PsiElement psi;
+        final private L<Object> funcHashValues;
+        final private int hash;
+
+        private Key(PsiElement psi, L<Object> funcHashValues)
+        {
+            this.psi = psi;
+            this.funcHashValues = funcHashValues;
+            this.hash = Objects.hash(psi, funcHashValues);
+        }
+
+        /** @return non() for PSI parsed from phpdoc, it is made anew in every search */
+        static Opt<Key> make(PsiElement psi, ExprCtx ctx)
+        {
+            if (ctx.getFakeFileSource().has()) {
+                return non();
+            }
+            FuncCtx funcCtx = ctx.getFuncCtx();
+            L<Object> values = list();
+            values.add(funcCtx.getSearch().callStringDepth);
+            values.add(funcCtx.getSearch().shareCtxByArgShape);
+            values.add(funcCtx.getDetachedHashValues());
+            return som(new Key(psi, values));
+        }
+
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        public boolean equals(Object thatRaw)
+        {
+            return Tls.cast(Key.class, thatRaw)
+                .any(that -> this.hash == that.hash
+                    && this.psi.equals(that.psi)
+                    && this.funcHashValues.equals(that.funcHashValues));
+        }
+    }
+
+    static class Entry
+    {
+        final L<TypeSnap> snaps;
+        // files types were resolved from, mapped to their modification stamp at the moment of reading
+        final Map<PsiFile, Long> fileToStamp;
+        final long outOfCodeBlockCount;
+        // set if types were found by a project-wide lookup, like field writes from index
+        final Opt<Long> modCount;
+
+        Entry(L<TypeSnap> snaps, Map<PsiFile, Long> fileToStamp, long outOfCodeBlockCount, Opt<Long> modCount)
+        {
+            this.snaps = snaps;
+            this.fileToStamp = fileToStamp;
+            this.outOfCodeBlockCount = outOfCodeBlockCount;
+            this.modCount = modCount;
+        }
+    }
+
+    final private Project project;
+    // PSI modification count when stale entries were dropped last time
+    private long modCount = -1;
+    private int hits = 0;
+    private int misses = 0;
+    final private Map<Key, Entry> keyToEntry = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    public TypeCache(Project project)
+    {
+        this.project = project;
+    }
+
+    public static Opt<TypeCache> inst(Project project)
+    {
+        return opt(ServiceManager.getService(project, TypeCache.class));
+    }
+
+    public long getModCount()
+    {
+        return PsiModificationTracker.SERVICE.getInstance(project).getModificationCount();
+    }
+
+    /** changed when a class, function or field is added or changed, but not on edits inside function bodies */
+    public long getOutOfCodeBlockCount()
+    {
+        return PsiModificationTracker.SERVICE.getInstance(project).getOutOfCodeBlockModificationCount();
+    }
+
+    public static boolean isUpToDate(Map<PsiFile, Long> fileToStamp)
+    {
+        return It(fileToStamp.entrySet())
+            .all(e -> e.getKey().isValid() && e.getKey().getModificationStamp() == e.getValue());
+    }
+
+    private boolean isUpToDate(Entry entry)
+    {
+        return entry.outOfCodeBlockCount == getOutOfCodeBlockCount()
+            && entry.modCount.all(cnt -> cnt == getModCount())
+            && isUpToDate(entry.fileToStamp);
+    }
+
+    /** checked only when something changed, so that entries with PSI of old files did not stay in memory */
+    private void dropIfModified()
+    {
+        long current = getModCount();
+        if (current != modCount) {
+            L(keyToEntry.entrySet())
+                .flt(e -> !isUpToDate(e.getValue()))
+                .map(e -> e.getKey()).arr()
+                .fch(key -> keyToEntry.remove(key));
+            modCount = current;
+        }
+    }
+
+    synchronized Opt<Entry> get(Key key)
+    {
+        dropIfModified();
+        Opt<Entry> entry = opt(keyToEntry.get(key));
+        if (entry.has()) {
+            ++hits;
+        } else {
+            ++misses;
+        }
+        return entry;
+    }
+
+    /** stamps, counts, everything must be taken when search read them, not now */
+    synchronized void put(Key key, Entry entry)
+    {
+        dropIfModified();
+        if (!isUpToDate(entry)) {
+            return; // PSI changed while we were resolving, types are stale
+        }
+        keyToEntry.put(key, entry);
+    }
+
+    public synchronized int getHits()
+    {
+        return hits;
+    }
+
+    public synchronized int getMisses()
+    {
+        return misses;
+    }
+
+    public synchronized int size()
+    {
+        return keyToEntry.size();
+    }
+}
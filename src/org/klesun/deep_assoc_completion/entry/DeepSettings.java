@@ -22,9 +22,19 @@ public class DeepSettings implements PersistentStateComponent<DeepSettings> {
     public Integer explicitDepthLimit = 55;
     public Integer implicitDepthLimit = 30;
     public Integer totalExpressionLimit = 7500;
+    // expressions a type source may resolve before sources competing with it get priority
+    public Integer branchExpressionBudget = 1500;
     public Integer usageBasedCompletionDepthLimit = 3;
+    // key assignments of a var above this count are joined into a single array type
+    public Integer assignmentWideningThreshold = 15;
+    // subclasses in other files looked through for writes of an inherited field
+    public Integer fieldWriteSubclassLimit = 100;
     public Boolean removeUnusedImportsOnSaveEnabled = false;
     public Boolean passArgsToImplementations = false;
+    // how many call sites function result is cached by: 0, 1, 2..., -1 - whole call stack
+    public Integer callStringDepth = -1;
+    // cache function results by key names/classes of args rather than by call site
+    public Boolean shareFuncCtxByArgShape = false;
 
     public static DeepSettings inst(Project project) {
         return Opt.fst(
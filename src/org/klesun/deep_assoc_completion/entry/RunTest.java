@@ -56,26 +56,31 @@ public class RunTest extends AnAction
         return meths.has() ? opt(meths) : opt(null);
     }
 
-    private static IExprCtx makeNewExprCtx(PsiElement psi)
+    /** @param searches - to report resolution speed, so that performance changes could be compared on same test set */
+    private static IExprCtx makeNewExprCtx(PsiElement psi, L<SearchCtx> searches)
     {
         SearchCtx search = new SearchCtx(psi.getProject())
             .setDepth(AssocKeyPvdr.getMaxDepth(false, psi.getProject()));
+        // previous case is checked by now, its types are taken by next ones
+        // from TypeCache, like on next completion in the editor
+        searches.lst().thn(prev -> prev.persistTypes());
+        searches.add(search);
         FuncCtx funcCtx = new FuncCtx(search);
         ExprCtx exprCtx = new ExprCtx(funcCtx, psi, 0);
         return exprCtx;
     }
 
-    private static It<DeepType> getReturnType(Method func)
+    private static It<DeepType> getReturnType(Method func, L<SearchCtx> searches)
     {
         return ClosRes.findFunctionReturns(func)
             .map(ret -> ret.getArgument())
             .fop(toCast(PhpExpression.class))
-            .fap(retVal -> makeNewExprCtx(retVal).findExprType(retVal));
+            .fap(retVal -> makeNewExprCtx(retVal, searches).findExprType(retVal));
     }
 
-    private static It<T3<CaseContext, DeepType.Key, DeepType.Key>> parseReturnedTestCase(Method func, Logger logger)
+    private static It<T3<CaseContext, DeepType.Key, DeepType.Key>> parseReturnedTestCase(Method func, Logger logger, L<SearchCtx> searches)
     {
-        return getReturnType(func)
+        return getReturnType(func, searches)
             .fap(t -> Mt.getKeySt(t, null))
             .fap((rett, i) -> {
                 CaseContext ctx = new CaseContext(logger);
@@ -87,16 +92,16 @@ public class RunTest extends AnAction
             });
     }
 
-    private static It<T3<CaseContext, Mt, Mt>> parseArgTestCase(Method func, Logger logger)
+    private static It<T3<CaseContext, Mt, Mt>> parseArgTestCase(Method func, Logger logger, L<SearchCtx> searches)
     {
-        It<DeepType> retit = getReturnType(func);
+        It<DeepType> retit = getReturnType(func, searches);
         L<String> funcArgNames = It(func.getParameters())
             .map(par -> par.getName()).arr();
         return retit.fap(rett -> {
             It<String> testArgNames = rett.keys.fap(k -> k.keyType.getNames()).unq();
             return testArgNames.map((argName, i) -> {
                 int argOrder = funcArgNames.indexOf(argName);
-                IExprCtx exprCtx = makeNewExprCtx(func);
+                IExprCtx exprCtx = makeNewExprCtx(func, searches);
                 Mt actual = new UsageResolver(exprCtx, 10)
                     .findArgTypeFromUsage(func, argOrder, exprCtx.subCtxEmpty())
                     .wap(Mt::new);
@@ -113,11 +118,14 @@ public class RunTest extends AnAction
     public void actionPerformed(AnActionEvent e)
     {
         Logger logger = new Logger();
+        // local to this run, so that PSI of the searches was not kept after it
+        L<SearchCtx> searches = list();
+        long startTime = System.nanoTime();
         logger.scheduleBg(() -> {
             It<Error> exactKeyErrors = opt(e.getData(LangDataKeys.PSI_FILE))
                 .fop(file -> findExactKeysTestDataPvdrFuncs(file))
                 .els(() -> System.out.println("Failed to find data-providing functions"))
-                .fap(funcs -> funcs.fap(f -> parseReturnedTestCase(f, logger)))
+                .fap(funcs -> funcs.fap(f -> parseReturnedTestCase(f, logger, searches)))
                 .fap(tu -> tu.nme((ctx, actual, expected) -> {
                     L<String> expectedKeys = new Mt(expected.getTypes())
                         .getKey(null).getStringValues().arr();
@@ -140,7 +148,7 @@ public class RunTest extends AnAction
             It<Error> errors = opt(e.getData(LangDataKeys.PSI_FILE))
                 .fop(file -> findTestDataPvdrFuncs(file))
                 .els(() -> System.out.println("Failed to find data-providing functions"))
-                .fap(funcs -> funcs.fap(f -> parseReturnedTestCase(f, logger)))
+                .fap(funcs -> funcs.fap(f -> parseReturnedTestCase(f, logger, searches)))
                 .fap(tuple -> {
                     try {
                         //logger.logMsg("doing " + tuple.a.dataProviderName + " #" + tuple.a.testNumber);
@@ -156,7 +164,7 @@ public class RunTest extends AnAction
                 .fop(file -> findUsageTestDataPvdrFuncs(file))
                 .els(() -> System.out.println("Failed to find usage data-providing functions"))
                 .fap(funcs -> funcs.fap(f -> {
-                    It<T3<CaseContext, Mt, Mt>> tests = parseArgTestCase(f, logger);
+                    It<T3<CaseContext, Mt, Mt>> tests = parseArgTestCase(f, logger, searches);
                     if (!tests.has()) {
                         CaseContext ctx = new CaseContext(logger);
                         String msg = "No tests in provide* function " + f.getName();
@@ -177,7 +185,13 @@ public class RunTest extends AnAction
                     }
                 }));
 
-            return It.cnc(usageErrors, errors, exactKeyErrors);
+            return It.cnc(usageErrors, errors, exactKeyErrors)
+                .thn(cnt -> {
+                    double seconds = (System.nanoTime() - startTime) / 1000000000.0;
+                    int exprCnt = searches.map(s -> s.getExpressionsResolved()).rdc((a, b) -> a + b, 0);
+                    logger.logMsg("\nResolved " + exprCnt + " expressions in " + seconds + " s. - " +
+                        ((int)(exprCnt / seconds)) + " expressions/s");
+                });
         });
     }
 }
@@ -100,17 +100,13 @@ public class Mt extends Lang
 
     public static It<DeepType> getDynaPropSt(DeepType type, String keyName)
     {
-        return getPropOfName(type.props.vls(), keyName);
+        return getPropOfName(type.getProps(), keyName);
     }
 
     public static It<DeepType> getKeySt(DeepType type, String keyName)
     {
         return It.cnc(
-            type.keys
-                .flt(k -> keyName == null || k.keyType.getTypes()
-                    .any(kt -> keyName.equals(kt.stringValue)
-                        || kt.stringValue == null
-                        && (!kt.isNumber() || Tls.isNum(keyName))))
+            type.getKeysOfName(keyName)
                 .fap(k -> k.getTypes()),
             opt(type.briefType.elementType().filterUnknown().filterMixed())
                 .flt(it -> !it.isEmpty()).itr()
@@ -146,7 +142,7 @@ public class Mt extends Lang
 
     public It<DeepType.Key> getAssignedProps()
     {
-        return types.fap(t -> t.props.vls());
+        return types.fap(t -> t.getProps());
     }
 
     public static PhpType joinIdeaTypes(Iterable<PhpType> ideaTypes)
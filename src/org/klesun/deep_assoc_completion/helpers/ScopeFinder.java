@@ -1,6 +1,8 @@
 package org.klesun.deep_assoc_completion.helpers;
 
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
 import com.jetbrains.php.lang.psi.elements.*;
 import com.jetbrains.php.lang.psi.elements.impl.*;
 import org.klesun.lang.L;
@@ -8,7 +10,8 @@ import org.klesun.lang.Lang;
 import org.klesun.lang.Opt;
 import org.klesun.lang.Tls;
 
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -17,6 +20,18 @@ import java.util.Objects;
  */
 public class ScopeFinder extends Lang
 {
+    /**
+     * chains of GroupStatement-s ({...} blocks) of a file, innermost first, so
+     * that comparing scopes of hundreds of assignments in a long function to the
+     * var usage did not walk up the tree from each of them to the file root
+     *
+     * kept in the file itself, so it is dropped when file changes or is unloaded
+     */
+    private static class FileScopes
+    {
+        final Map<PsiElement, L<PsiElement>> groupToChain = new HashMap<>();
+    }
+
     private static Opt<PsiElement> getParentScope(PsiElement psi)
     {
         PsiElement next = psi.getParent();
@@ -30,17 +45,55 @@ public class ScopeFinder extends Lang
         return new Opt(null);
     }
 
-    private static L<PsiElement> getParentScopes(PsiElement psi)
+    private static Opt<FileScopes> getFileScopes(PsiElement psi)
     {
-        L<PsiElement> result = list();
-        Opt<PsiElement> next = getParentScope(psi);
-        while (next.has()) {
-            next.thn(result::add);
-            next = getParentScope(next.def(null));
+        return opt(psi.getContainingFile())
+            .map(file -> CachedValuesManager.getCachedValue(file,
+                () -> CachedValueProvider.Result.create(new FileScopes(), file)));
+    }
+
+    /** @param group - GroupStatement, included in the result */
+    private static L<PsiElement> getChain(PsiElement group, Opt<FileScopes> fileScopes)
+    {
+        Opt<L<PsiElement>> cached = fileScopes
+            .fop(scopes -> getCached(scopes, group));
+        if (cached.has()) {
+            return cached.unw();
         }
+        L<PsiElement> result = list(group);
+        getParentScope(group).thn(parent -> result.addAll(getChain(parent, fileScopes)));
+        fileScopes.thn(scopes -> cache(scopes, group, result));
         return result;
     }
 
+    private static synchronized Opt<L<PsiElement>> getCached(FileScopes scopes, PsiElement group)
+    {
+        return opt(scopes.groupToChain.get(group));
+    }
+
+    private static synchronized void cache(FileScopes scopes, PsiElement group, L<PsiElement> chain)
+    {
+        scopes.groupToChain.put(group, chain);
+    }
+
+    /** @return scopes psi is in, innermost first, do not modify it - it is shared */
+    private static L<PsiElement> getParentScopes(PsiElement psi)
+    {
+        return getParentScope(psi)
+            .map(group -> getChain(group, getFileScopes(psi)))
+            .def(list());
+    }
+
+    /**
+     * same as checking whether scope is among getParentScopes(psi), but
+     * O(1): block contains psi if and only if its text range does
+     */
+    private static boolean isInScope(PsiElement psi, PsiElement scope)
+    {
+        return Objects.equals(psi.getContainingFile(), scope.getContainingFile())
+            && scope.getTextRange().contains(psi.getTextRange());
+    }
+
     public static boolean isPartOf(PsiElement child, PsiElement grandParent)
     {
         PsiElement parent = child;
@@ -109,10 +162,19 @@ public class ScopeFinder extends Lang
 
     private static boolean isInALoop(PsiElement stmtPsi)
     {
-        return Tls.findParent(stmtPsi, For.class, psi -> !(psi instanceof Function)).map(a -> true).def(false)
-            || Tls.findParent(stmtPsi, While.class, psi -> !(psi instanceof Function)).map(a -> true).def(false)
-            || Tls.findParent(stmtPsi, ForeachImpl.class, psi -> !(psi instanceof Function)).map(a -> true).def(false)
-            || Tls.findParent(stmtPsi, DoWhile.class, psi -> !(psi instanceof Function)).map(a -> true).def(false);
+        // one walk up to the function instead of one per loop kind
+        PsiElement parent = stmtPsi.getParent();
+        while (parent != null) {
+            if (parent instanceof For || parent instanceof While
+                || parent instanceof ForeachImpl || parent instanceof DoWhile
+            ) {
+                return true;
+            } else if (parent instanceof Function) {
+                return false;
+            }
+            parent = parent.getParent();
+        }
+        return false;
     }
 
     /**
@@ -141,22 +203,19 @@ public class ScopeFinder extends Lang
         }
 
         Opt<PsiElement> refScope = getParentScope(reference);
-        List<PsiElement> varScopes = getParentScopes(caretVar);
 
         Opt<ControlStatementImpl> elseIf = isInElseIfCondition(reference);
         if (elseIf.has()) {
             for (PsiElement part: elseIf.def(null).getChildren()) {
                 if (part instanceof GroupStatement) {
-                    return varScopes.stream().anyMatch(s -> s.isEquivalentTo(part));
+                    return isInScope(caretVar, part);
                 }
             }
             return false;
         }
 
         return refScope
-            .map(declScope -> varScopes
-                .stream()
-                .anyMatch(scope -> scope.isEquivalentTo(declScope)))
+            .map(declScope -> isInScope(caretVar, declScope))
             .def(false);
     }
 
@@ -0,0 +1,111 @@
+package org.klesun.deep_assoc_completion.indexes;
+
+import com.intellij.openapi.project.IndexNotReadyException;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.indexing.*;
+import com.jetbrains.php.lang.psi.elements.ArrayCreationExpression;
+import com.jetbrains.php.lang.psi.elements.Method;
+import com.jetbrains.php.lang.psi.elements.MethodReference;
+import com.jetbrains.php.lang.psi.elements.StringLiteralExpression;
+import org.jetbrains.annotations.NotNull;
+import org.klesun.lang.It;
+import org.klesun.lang.L;
+import org.klesun.lang.Opt;
+import org.klesun.lang.Tls;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.klesun.lang.Lang.*;
+
+/**
+ * method name -> offsets of `$obj->name(...)` calls and `[$this, 'name']`
+ * callables, so that arg types of a private method could be inferred from
+ * its usages without going through every method reference in the file
+ *
+ * only usages in the file that declares the method are looked up,
+ * so calls of methods not declared in same file are not indexed
+ */
+public class CallSiteIndex extends OffsetIndex
+{
+    final public static ID<String, L<Integer>> NAME = ID.create("org.klesun.deep_assoc_completion.CallSiteIndex");
+
+    /** `[$this, 'someMethod']` or `[self::class, 'someMethod']` */
+    public static Opt<String> getCallableArrName(ArrayCreationExpression arr)
+    {
+        L<PsiElement> children = L(arr.getChildren());
+        return som(children)
+            .flt(chd -> chd.size() == 2)
+            .flt(chd -> chd.gat(0)
+                .flt(psi -> psi.getText().equals("$this")
+                        || psi.getText().equals("self::class")
+                        || psi.getText().equals("static::class"))
+                .has())
+            .fop(chd -> chd.gat(1))
+            .map(psi -> psi.getFirstChild())
+            .fop(toCast(StringLiteralExpression.class))
+            .map(str -> str.getContents());
+    }
+
+    private static Opt<String> getCallName(PsiElement psi)
+    {
+        return Opt.fst(
+            () -> Tls.cast(MethodReference.class, psi).fop(call -> opt(call.getName())),
+            () -> Tls.cast(ArrayCreationExpression.class, psi).fop(arr -> getCallableArrName(arr))
+        );
+    }
+
+    @NotNull
+    @Override
+    public ID<String, L<Integer>> getName()
+    {
+        return NAME;
+    }
+
+    @NotNull
+    @Override
+    public DataIndexer<String, L<Integer>, FileContent> getIndexer()
+    {
+        return inputData -> {
+            Map<String, L<Integer>> nameToOffsets = new HashMap<>();
+            PsiFile file = inputData.getPsiFile();
+            Set<String> declaredNames = new HashSet<>(It(PsiTreeUtil.findChildrenOfType(file, Method.class))
+                .map(meth -> meth.getName()).arr());
+            It(PsiTreeUtil.findChildrenOfAnyType(file, MethodReference.class, ArrayCreationExpression.class))
+                .fch(psi -> getCallName(psi).flt(declaredNames::contains)
+                    .thn(name -> addOffset(nameToOffsets, name, psi)));
+            return nameToOffsets;
+        };
+    }
+
+    @Override
+    public int getVersion()
+    {
+        return 2;
+    }
+
+    /**
+     * @return MethodReference-s and callable ArrayCreationExpression-s
+     *  or non() if index is not available right now (dumb mode)
+     */
+    public static Opt<It<PsiElement>> findCallSites(PsiFile file, String name)
+    {
+        if (file.getVirtualFile() == null) {
+            return non();
+        }
+        try {
+            L<Integer> offsets = It(FileBasedIndex.getInstance()
+                .getValues(NAME, name, GlobalSearchScope.fileScope(file)))
+                .fap(offs -> offs).arr();
+            return som(offsets.fop(offset -> findAt(file, offset, psi -> getCallName(psi)
+                .flt(name::equals).map(nme -> psi)))));
+        } catch (IndexNotReadyException exc) {
+            return non();
+        }
+    }
+}
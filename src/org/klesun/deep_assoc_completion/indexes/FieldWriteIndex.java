@@ -0,0 +1,146 @@
+package org.klesun.deep_assoc_completion.indexes;
+
+import com.intellij.openapi.project.IndexNotReadyException;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.indexing.*;
+import com.jetbrains.php.PhpIndex;
+import com.jetbrains.php.lang.psi.elements.Field;
+import com.jetbrains.php.lang.psi.elements.FieldReference;
+import com.jetbrains.php.lang.psi.elements.PhpClass;
+import com.jetbrains.php.lang.psi.elements.impl.FieldReferenceImpl;
+import org.jetbrains.annotations.NotNull;
+import org.klesun.deep_assoc_completion.entry.DeepSettings;
+import org.klesun.deep_assoc_completion.resolvers.var_res.AssRes;
+import org.klesun.lang.It;
+import org.klesun.lang.L;
+import org.klesun.lang.Opt;
+import org.klesun.lang.Tls;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.klesun.lang.Lang.*;
+
+/**
+ * "\Some\ClassFqn.fieldName" -> offsets of `$this->fieldName = ...` and
+ * `$this->fieldName['key'] = ...` writes inside methods of that class
+ *
+ * "*.fieldName" -> offsets of `$obj->fieldName = ...` writes made not through
+ * `$this`, they are looked up only in the file that declares the field, since
+ * the class of `$obj` is not known without resolving it
+ *
+ * replaces scanning all field references of the file on each search, and
+ * also finds writes of inherited fields made in subclasses in other files
+ */
+public class FieldWriteIndex extends OffsetIndex
+{
+    final public static ID<String, L<Integer>> NAME = ID.create("org.klesun.deep_assoc_completion.FieldWriteIndex");
+
+    private static String makeKey(String clsFqn, String fieldName)
+    {
+        return clsFqn + "." + fieldName;
+    }
+
+    private static String makeForeignKey(String fieldName)
+    {
+        return "*." + fieldName;
+    }
+
+    /** `$this->field`, `self::$field`, `static::$field` */
+    private static boolean isOwnField(FieldReference ref)
+    {
+        return opt(ref.getClassReference())
+            .map(clsRef -> clsRef.getText())
+            .flt(txt -> txt.equals("$this") || txt.equals("self") || txt.equals("static"))
+            .has();
+    }
+
+    @NotNull
+    @Override
+    public ID<String, L<Integer>> getName()
+    {
+        return NAME;
+    }
+
+    @NotNull
+    @Override
+    public DataIndexer<String, L<Integer>, FileContent> getIndexer()
+    {
+        return inputData -> {
+            Map<String, L<Integer>> keyToOffsets = new HashMap<>();
+            PsiFile file = inputData.getPsiFile();
+            It(PsiTreeUtil.findChildrenOfType(file, FieldReference.class))
+                .flt(ref -> opt(ref.getName()).flt(nme -> !nme.equals("")).has())
+                .flt(ref -> AssRes.findParentAssignment(ref).has())
+                .fch(ref -> {
+                    String key = som(ref)
+                        .flt(r -> isOwnField(r))
+                        .fop(r -> Tls.findParent(r, PhpClass.class, a -> true))
+                        .map(cls -> makeKey(cls.getFQN(), ref.getName()))
+                        .def(makeForeignKey(ref.getName()));
+                    addOffset(keyToOffsets, key, ref);
+                });
+            return keyToOffsets;
+        };
+    }
+
+    @Override
+    public int getVersion()
+    {
+        return 2;
+    }
+
+    private static It<FieldReferenceImpl> findWrites(Project project, String key, String fieldName, GlobalSearchScope scope)
+    {
+        PsiManager psiManager = PsiManager.getInstance(project);
+        L<FieldReferenceImpl> writes = list();
+        FileBasedIndex.getInstance().processValues(
+            NAME, key, null,
+            (vFile, offsets) -> {
+                opt(psiManager.findFile(vFile)).thn(file -> offsets
+                    .fop(offset -> findAt(file, offset, psi -> Tls.cast(FieldReferenceImpl.class, psi)
+                        .flt(fld -> fieldName.equals(fld.getName()))))
+                    .fch(ref -> writes.add(ref)));
+                return true;
+            },
+            scope
+        );
+        return writes.itr();
+    }
+
+    /**
+     * @return writes in the class that declared the field, in its subclasses
+     *  and writes through other vars in the declaring file or non() if index
+     *  is not available right now (dumb mode)
+     */
+    public static Opt<It<FieldReferenceImpl>> findWrites(Field decl)
+    {
+        Project project = decl.getProject();
+        return opt(decl.getContainingClass())
+            .fop(declCls -> opt(decl.getContainingFile())
+                .fop(file -> opt(file.getVirtualFile()))
+                .fop(declFile -> {
+                    try {
+                        // Laravel's Model has thousands of subclasses
+                        int maxSubclasses = DeepSettings.inst(project).fieldWriteSubclassLimit;
+                        It<PhpClass> clses = It.cnc(
+                            som(declCls),
+                            It(PhpIndex.getInstance(project)
+                                .getAllSubclasses(declCls.getFQN())).lmt(maxSubclasses)
+                        ).unq();
+                        GlobalSearchScope allScope = GlobalSearchScope.allScope(project);
+                        return som(It.cnc(
+                            clses.fap(cls -> findWrites(project, makeKey(cls.getFQN(), decl.getName()), decl.getName(), allScope)),
+                            findWrites(project, makeForeignKey(decl.getName()), decl.getName(),
+                                GlobalSearchScope.fileScope(project, declFile))
+                        ).arr().itr());
+                    } catch (IndexNotReadyException exc) {
+                        return non();
+                    }
+                }));
+    }
+}
@@ -0,0 +1,134 @@
+package org.klesun.deep_assoc_completion.indexes;
+
+import com.intellij.openapi.project.IndexNotReadyException;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.indexing.*;
+import com.jetbrains.php.lang.psi.elements.*;
+import org.jetbrains.annotations.NotNull;
+import org.klesun.deep_assoc_completion.resolvers.var_res.AssRes;
+import org.klesun.lang.It;
+import org.klesun.lang.L;
+import org.klesun.lang.Opt;
+import org.klesun.lang.Tls;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.klesun.lang.Lang.*;
+
+/**
+ * global var name -> offsets of `$GLOBALS['name'] = ...` writes (offset of
+ * `$GLOBALS`) and of `$name = ...` writes in functions that have `global $name`
+ *
+ * lets resolve a global var by the writes of that name only instead
+ * of resolving every `$GLOBALS` usage in the project on each search
+ *
+ * writes with a dynamic name like `$GLOBALS[$name] = ...` are not indexed,
+ * since the name is not known without resolving the key expression
+ */
+public class GlobalWriteIndex extends OffsetIndex
+{
+    final public static ID<String, L<Integer>> NAME = ID.create("org.klesun.deep_assoc_completion.GlobalWriteIndex");
+
+    // $GLOBALS['name'] = ...
+    private static Opt<T2<String, Variable>> getMagicVarWrite(Variable globalsVar)
+    {
+        return som(globalsVar)
+            .flt(vari -> "GLOBALS".equals(vari.getName()))
+            .flt(vari -> AssRes.findParentAssignment(vari).has())
+            .fop(vari -> opt(vari.getParent()))
+            .fop(toCast(ArrayAccessExpression.class))
+            .fop(acc -> opt(acc.getIndex()))
+            .fop(idx -> opt(idx.getValue()))
+            .fop(toCast(StringLiteralExpression.class))
+            .map(lit -> T2(lit.getContents(), globalsVar));
+    }
+
+    // function(){ global $name; $name = ...; }
+    private static It<T2<String, Variable>> getGlobalDeclWrites(Global glob)
+    {
+        L<String> names = It(PsiTreeUtil.findChildrenOfType(glob, Variable.class))
+            .map(vari -> vari.getName()).arr();
+        return Tls.findParent(glob, Function.class, a -> true)
+            .fap(func -> PsiTreeUtil.findChildrenOfType(func, Variable.class))
+            .flt(vari -> names.contains(vari.getName()))
+            .flt(vari -> AssRes.findParentAssignment(vari).has())
+            .map(vari -> T2(vari.getName(), vari));
+    }
+
+    @NotNull
+    @Override
+    public ID<String, L<Integer>> getName()
+    {
+        return NAME;
+    }
+
+    @NotNull
+    @Override
+    public DataIndexer<String, L<Integer>, FileContent> getIndexer()
+    {
+        return inputData -> {
+            Map<String, L<Integer>> nameToOffsets = new HashMap<>();
+            PsiFile file = inputData.getPsiFile();
+            It.cnc(
+                It(PsiTreeUtil.findChildrenOfType(file, Variable.class)).fop(vari -> getMagicVarWrite(vari)),
+                It(PsiTreeUtil.findChildrenOfType(file, Global.class)).fap(glob -> getGlobalDeclWrites(glob))
+            ).fch(write -> addOffset(nameToOffsets, write.a, write.b));
+            return nameToOffsets;
+        };
+    }
+
+    @Override
+    public int getVersion()
+    {
+        return 1;
+    }
+
+    /**
+     * @return `$GLOBALS` in `$GLOBALS['name'] = ...` or `$name` in `$name = ...`
+     *  or non() if index is not available right now (dumb mode)
+     */
+    public static Opt<L<Variable>> findWrites(Project project, String name)
+    {
+        PsiManager psiManager = PsiManager.getInstance(project);
+        L<Variable> writes = list();
+        try {
+            FileBasedIndex.getInstance().processValues(
+                NAME, name, null,
+                (vFile, offsets) -> {
+                    opt(psiManager.findFile(vFile)).thn(file -> offsets
+                        .fop(offset -> findAt(file, offset, toCast(Variable.class)))
+                        .fch(vari -> writes.add(vari)));
+                    return true;
+                },
+                GlobalSearchScope.allScope(project)
+            );
+        } catch (IndexNotReadyException exc) {
+            return non();
+        }
+        return som(writes);
+    }
+
+    /**
+     * getAllKeys() may include names that were written in a file once, but not
+     * anymore, so only names that still have values in the project are kept
+     *
+     * @return non() if index is not available right now (dumb mode)
+     */
+    public static Opt<L<String>> getNames(Project project)
+    {
+        FileBasedIndex index = FileBasedIndex.getInstance();
+        GlobalSearchScope scope = GlobalSearchScope.allScope(project);
+        try {
+            return som(It(index.getAllKeys(NAME, project))
+                .flt(name -> !index.getValues(NAME, name, scope).isEmpty())
+                .arr());
+        } catch (IndexNotReadyException exc) {
+            return non();
+        }
+    }
+}
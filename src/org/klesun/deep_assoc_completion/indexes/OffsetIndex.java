@@ -0,0 +1,94 @@
+package org.klesun.deep_assoc_completion.indexes;
+
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import com.jetbrains.php.lang.PhpFileType;
+import org.jetbrains.annotations.NotNull;
+import org.klesun.lang.L;
+import org.klesun.lang.Lang;
+import org.klesun.lang.Opt;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+
+import static org.klesun.lang.Lang.*;
+
+/**
+ * a name -> offsets of PSI in a php file, the PSI is
+ * found by these offsets in the file on lookup
+ */
+public abstract class OffsetIndex extends FileBasedIndexExtension<String, L<Integer>>
+{
+    static void addOffset(Map<String, L<Integer>> keyToOffsets, String key, PsiElement psi)
+    {
+        if (!keyToOffsets.containsKey(key)) {
+            keyToOffsets.put(key, list());
+        }
+        keyToOffsets.get(key).add(psi.getTextRange().getStartOffset());
+    }
+
+    /** several PSI may start at same offset, like `$this->a->b = 123`, so going up while offset matches */
+    static <T> Opt<T> findAt(PsiFile file, int offset, Lang.F<PsiElement, Opt<T>> match)
+    {
+        PsiElement psi = file.findElementAt(offset);
+        while (psi != null && psi.getTextRange().getStartOffset() == offset) {
+            Opt<T> matched = match.apply(psi);
+            if (matched.has()) {
+                return matched;
+            }
+            psi = psi.getParent();
+        }
+        return non();
+    }
+
+    @NotNull
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor()
+    {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @NotNull
+    @Override
+    public DataExternalizer<L<Integer>> getValueExternalizer()
+    {
+        return new DataExternalizer<L<Integer>>() {
+            public void save(@NotNull DataOutput out, L<Integer> offsets) throws IOException
+            {
+                out.writeInt(offsets.size());
+                for (int offset: offsets) {
+                    out.writeInt(offset);
+                }
+            }
+
+            public L<Integer> read(@NotNull DataInput in) throws IOException
+            {
+                L<Integer> offsets = list();
+                int cnt = in.readInt();
+                for (int i = 0; i < cnt; ++i) {
+                    offsets.add(in.readInt());
+                }
+                return offsets;
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter()
+    {
+        return new DefaultFileTypeSpecificInputFilter(PhpFileType.INSTANCE);
+    }
+
+    @Override
+    public boolean dependsOnFileContent()
+    {
+        return true;
+    }
+}
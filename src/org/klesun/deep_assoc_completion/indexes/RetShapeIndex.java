@@ -0,0 +1,191 @@
+package org.klesun.deep_assoc_completion.indexes;
+
+import com.intellij.openapi.project.IndexNotReadyException;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.IOUtil;
+import com.intellij.util.io.KeyDescriptor;
+import com.jetbrains.php.lang.PhpFileType;
+import com.jetbrains.php.lang.psi.elements.*;
+import com.jetbrains.php.lang.psi.elements.impl.PhpReturnImpl;
+import org.jetbrains.annotations.NotNull;
+import org.klesun.deep_assoc_completion.resolvers.ClosRes;
+import org.klesun.lang.It;
+import org.klesun.lang.L;
+import org.klesun.lang.Opt;
+import org.klesun.lang.Tls;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.klesun.lang.Lang.*;
+
+/**
+ * function FQN -> literal keys of the arrays it returns
+ *
+ * only functions that return nothing but `return ['key' => $value, ...]` with
+ * plain string keys get here - it is enough to know the key names and where
+ * the arrays are, so resolution could skip walking the whole function body
+ * and resolving each key expression, the values are still resolved lazily
+ *
+ * `@return` doc shapes are not indexed, since DocParamRes parses them
+ * as php code with PsiFileFactory, which is not something to do in indexer
+ */
+public class RetShapeIndex extends FileBasedIndexExtension<String, L<RetShapeIndex.ArrRet>>
+{
+    final public static ID<String, L<ArrRet>> NAME = ID.create("org.klesun.deep_assoc_completion.RetShapeIndex");
+
+    /** a `return [...]` statement */
+    public static class ArrRet
+    {
+        // start offset of the array creation expression in file
+        final public int offset;
+        // in same order as hash elements in the array
+        final public L<String> keyNames;
+
+        public ArrRet(int offset, L<String> keyNames)
+        {
+            this.offset = offset;
+            this.keyNames = keyNames;
+        }
+    }
+
+    private static Opt<ArrRet> summarize(PhpReturnImpl ret)
+    {
+        return opt(ret.getArgument())
+            .fop(toCast(ArrayCreationExpression.class))
+            // indexed elements would require index of element in the
+            // array to be stored as well, not worth it for now
+            .flt(arr -> !It(arr.getChildren()).any(psi -> !(psi instanceof ArrayHashElement)))
+            .fop(arr -> It(arr.getHashElements())
+                .fal(hashEl -> Tls.getLiteralKey(hashEl))
+                .map(keyNames -> new ArrRet(arr.getTextRange().getStartOffset(), keyNames)));
+    }
+
+    /** @return non() if function returns anything besides array literals with string keys */
+    private static Opt<L<ArrRet>> summarize(Function func)
+    {
+        L<PhpReturnImpl> returns = ClosRes.findFunctionReturns(func);
+        if (!returns.has() || ClosRes.findFunctionYields(func).has()) {
+            return non();
+        }
+        return returns.fal(ret -> summarize(ret));
+    }
+
+    @NotNull
+    @Override
+    public ID<String, L<ArrRet>> getName()
+    {
+        return NAME;
+    }
+
+    @NotNull
+    @Override
+    public DataIndexer<String, L<ArrRet>, FileContent> getIndexer()
+    {
+        return inputData -> {
+            Map<String, L<ArrRet>> fqnToRets = new HashMap<>();
+            PsiFile file = inputData.getPsiFile();
+            It(PsiTreeUtil.findChildrenOfType(file, Function.class))
+                .flt(func -> !func.isClosure())
+                .fch(func -> summarize(func)
+                    .thn(rets -> fqnToRets.put(func.getFQN(), rets)));
+            return fqnToRets;
+        };
+    }
+
+    @NotNull
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor()
+    {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @NotNull
+    @Override
+    public DataExternalizer<L<ArrRet>> getValueExternalizer()
+    {
+        return new DataExternalizer<L<ArrRet>>() {
+            public void save(@NotNull DataOutput out, L<ArrRet> rets) throws IOException
+            {
+                out.writeInt(rets.size());
+                for (ArrRet ret: rets) {
+                    out.writeInt(ret.offset);
+                    out.writeInt(ret.keyNames.size());
+                    for (String keyName: ret.keyNames) {
+                        IOUtil.writeUTF(out, keyName);
+                    }
+                }
+            }
+
+            public L<ArrRet> read(@NotNull DataInput in) throws IOException
+            {
+                L<ArrRet> rets = list();
+                int retCnt = in.readInt();
+                for (int i = 0; i < retCnt; ++i) {
+                    int offset = in.readInt();
+                    L<String> keyNames = list();
+                    int keyCnt = in.readInt();
+                    for (int j = 0; j < keyCnt; ++j) {
+                        keyNames.add(IOUtil.readUTF(in));
+                    }
+                    rets.add(new ArrRet(offset, keyNames));
+                }
+                return rets;
+            }
+        };
+    }
+
+    @Override
+    public int getVersion()
+    {
+        return 2;
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter()
+    {
+        return new DefaultFileTypeSpecificInputFilter(PhpFileType.INSTANCE);
+    }
+
+    @Override
+    public boolean dependsOnFileContent()
+    {
+        return true;
+    }
+
+    /** @return non() if function is not in the index or index is not available right now */
+    public static Opt<L<ArrRet>> getReturns(Function func)
+    {
+        PsiFile file = func.getContainingFile();
+        if (func.isClosure() || file == null || file.getVirtualFile() == null) {
+            return non();
+        }
+        try {
+            return It(FileBasedIndex.getInstance().getValues(
+                NAME, func.getFQN(), GlobalSearchScope.fileScope(file)
+            )).fst();
+        } catch (IndexNotReadyException exc) {
+            // dumb mode - fallback to PSI
+            return non();
+        }
+    }
+
+    /** @return the array psi if file was not changed since indexing */
+    public static Opt<ArrayCreationExpression> findArr(PsiElement func, ArrRet ret)
+    {
+        return opt(func.getContainingFile().findElementAt(ret.offset))
+            .fop(leaf -> opt(PsiTreeUtil.getParentOfType(leaf, ArrayCreationExpression.class, false)))
+            .flt(arr -> arr.getTextRange().getStartOffset() == ret.offset)
+            .flt(arr -> It(arr.getHashElements()).map(hashEl -> Tls.getLiteralKey(hashEl).def("")).arr().equals(ret.keyNames));
+    }
+}
@@ -187,8 +187,8 @@ public class ArrCtorRes extends Lang
 
         resolveMethodFromArray(orderedParams)
             .map(meth -> MethCallRes.findMethRetType(meth))
-            .fch(retTypeGetter -> arrayType.returnTypeGetters
-                .add((ctx) -> new MemIt<>(retTypeGetter.apply(ctx))));
+            .fch(retTypeGetter -> arrayType
+                .addReturnTypeGetter((ctx) -> new MemIt<>(retTypeGetter.apply(ctx))));
 
         // indexed elements
         orderedParams
@@ -204,20 +204,28 @@ public class ArrCtorRes extends Lang
             .fop(toCast(PhpExpression.class))
             .thn(v -> {
                 S<Mt> getType = Tls.onDemand(() -> ctx.findExprType(v).wap(Mt::new));
-                opt(keyRec.getKey())
-                    .fop(toCast(PhpExpression.class))
-                    .map(keyPsi -> ctx.findExprType(keyPsi))
-                    .map(keyTypes -> keyTypes.fop(t -> opt(t.stringValue)))
-                    .thn(keyStrValues -> {
-                        if (keyStrValues.has()) {
-                            keyStrValues.fch(key -> arrayType
-                                .addKey(key, ctx.getRealPsi(keyRec))
-                                    .addType(getType, Tls.getIdeaType(v))
-                                    .addComments(gatherSurroundingComments(keyRec)));
-                        } else {
-                            arrayType.addKey(KeyType.unknown(keyRec)).addType(getType);
-                        }
-                    });
+                Opt<String> literalKey = Tls.getLiteralKey(keyRec);
+                if (literalKey.has()) {
+                    // no need to resolve 'key' expression to know its name
+                    arrayType.addKey(literalKey.unw(), ctx.getRealPsi(keyRec))
+                        .addType(getType, Tls.getIdeaType(v))
+                        .addComments(gatherSurroundingComments(keyRec));
+                } else {
+                    opt(keyRec.getKey())
+                        .fop(toCast(PhpExpression.class))
+                        .map(keyPsi -> ctx.findExprType(keyPsi))
+                        .map(keyTypes -> keyTypes.fop(t -> opt(t.stringValue)))
+                        .thn(keyStrValues -> {
+                            if (keyStrValues.has()) {
+                                keyStrValues.fch(key -> arrayType
+                                    .addKey(key, ctx.getRealPsi(keyRec))
+                                        .addType(getType, Tls.getIdeaType(v))
+                                        .addComments(gatherSurroundingComments(keyRec)));
+                            } else {
+                                arrayType.addKey(KeyType.unknown(keyRec)).addType(getType);
+                            }
+                        });
+                }
             }));
 
         return arrayType;
@@ -6,6 +6,7 @@ import com.jetbrains.php.lang.psi.elements.impl.*;
 import org.klesun.deep_assoc_completion.structures.DeepType;
 import org.klesun.deep_assoc_completion.contexts.IExprCtx;
 import org.klesun.deep_assoc_completion.helpers.Mt;
+import org.klesun.deep_assoc_completion.indexes.RetShapeIndex;
 import org.klesun.lang.*;
 
 public class ClosRes extends Lang
@@ -47,7 +48,7 @@ public class ClosRes extends Lang
         return result;
     }
 
-    private static L<PhpYield> findFunctionYields(PsiElement funcBody)
+    public static L<PhpYield> findFunctionYields(PsiElement funcBody)
     {
         L<PhpYield> result = list();
         for (PsiElement child: funcBody.getChildren()) {
@@ -62,9 +63,24 @@ public class ClosRes extends Lang
         return result;
     }
 
+    /**
+     * literal arrays returned by a function are located by index,
+     * so that we did not have to walk whole function body
+     */
+    private static Opt<It<DeepType>> getIndexedReturnedValue(PsiElement funcBody, IExprCtx ctx)
+    {
+        return Tls.cast(Function.class, funcBody)
+            .fop(func -> RetShapeIndex.getReturns(func))
+            .fop(rets -> rets.fal(ret -> RetShapeIndex.findArr(funcBody, ret)))
+            // through the search, so that result was cached and limits applied like for any other return
+            .map(arrs -> arrs.fap(arr -> ctx.findExprType(arr)));
+    }
+
     public static It<DeepType> getReturnedValue(PsiElement funcBody, IExprCtx ctx)
     {
-        return It.cnc(
+        // a function without returns has no expressions that would tell that
+        ctx.addDependency(funcBody);
+        return getIndexedReturnedValue(funcBody, ctx).uni(types -> types, () -> It.cnc(
             findFunctionReturns(funcBody)
                 .fop(ret -> opt(ret.getArgument()))
                 .fop(toCast(PhpExpression.class))
@@ -77,7 +93,7 @@ public class ClosRes extends Lang
                         .fop(txt -> Tls.regex("yield\\s+from[^A-Za-z].*", txt))
                         .uni(txt -> tit, () -> list(Mt.getInArraySt(tit, funcBody))))
                 )
-        );
+        ));
     }
 
     public static It<Variable> getClosureVars(Function func)
@@ -91,7 +107,7 @@ public class ClosRes extends Lang
     public DeepType resolve(FunctionImpl func)
     {
         DeepType result = new DeepType(func, func.getLocalType(true));
-        result.returnTypeGetters.add((callCtx) -> {
+        result.addReturnTypeGetter((callCtx) -> {
             L<T2<String, S<MemIt<DeepType>>>> closureVars = getClosureVars(func)
                 .map(closVar -> {
                     S<MemIt<DeepType>> sup = Tls.onDemand(() ->
@@ -12,6 +12,7 @@ import com.jetbrains.php.lang.psi.elements.impl.FieldReferenceImpl;
 import com.jetbrains.php.lang.psi.resolve.types.PhpType;
 import org.klesun.deep_assoc_completion.contexts.IExprCtx;
 import org.klesun.deep_assoc_completion.helpers.Mt;
+import org.klesun.deep_assoc_completion.indexes.FieldWriteIndex;
 import org.klesun.deep_assoc_completion.resolvers.mem_res.MemRes;
 import org.klesun.deep_assoc_completion.resolvers.var_res.AssRes;
 import org.klesun.deep_assoc_completion.resolvers.var_res.DocParamRes;
@@ -51,6 +52,7 @@ public class FieldRes extends Lang
             //System.out.println("found refs in " + file.getName() + " over " + elapsed + " seconds");
         }
         Collection<FieldReferenceImpl> refs = ctx.getFieldRefCache().get(file);
+        ctx.addDependency(file);
         return It(refs)
             .flt(ref -> name.equals(ref.getName()));
     }
@@ -73,11 +75,26 @@ public class FieldRes extends Lang
         return ctxFqns.isEmpty() || ctxFqns.contains(fieldCls.getFQN());
     }
 
+    /**
+     * writes in the declaring class and its subclasses and writes through other
+     * vars in the declaring file, all taken from index, references of the declaring
+     * file are looked through only when index is not available (dumb mode)
+     */
+    private It<FieldReferenceImpl> findWrites(Field resolved, FieldReference fieldRef)
+    {
+        // a write may be added in any file
+        ctx.addProjectDependency();
+        return FieldWriteIndex.findWrites(resolved).uni(
+            writes -> writes,
+            () -> opt(resolved.getContainingFile())
+                .fap(file -> findReferences(file, fieldRef.getName()))
+        );
+    }
+
     private It<Assign> getAssignments(Field resolved, FieldReference fieldRef)
     {
         IExprCtx implCtx = ctx.subCtxEmpty();
-        return opt(resolved.getContainingFile())
-            .fap(file -> findReferences(file, fieldRef.getName()))
+        return findWrites(resolved, fieldRef)
             .fap(assPsi -> Tls.findParent(assPsi, Method.class, a -> true)
                 .flt(meth -> meth.getName().equals("__construct"))
                 .map(meth -> fieldRef.getClassReference())
@@ -96,6 +113,7 @@ public class FieldRes extends Lang
 
     private It<DeepType> declToExplTypes(Field resolved)
     {
+        ctx.addDependency(resolved);
         IExprCtx implCtx = ctx.subCtxEmpty();
         It<DeepType> defTs = Tls.cast(FieldImpl.class, resolved).itr()
             .map(fld -> fld.getDefaultValue())
@@ -146,12 +164,11 @@ public class FieldRes extends Lang
             .fap(cls -> cls.getFields())
             .flt(f -> !f.getModifier().isPrivate())
             .map(f -> {
-                DeepType kt = new DeepType(f, PhpType.STRING, f.getName());
-                KeyType keyType = KeyType.mt(som(kt), f);
+                KeyType keyType = KeyType.lit(f.getName(), f);
                 return new DeepType.Key(keyType, f)
                     .addType(() -> new Mt(declToExplTypes(f)), f.getType());
             });
-        return It.cnc(mt.types.fap(t -> t.props.vls()), declared);
+        return It.cnc(mt.types.fap(t -> t.getProps()), declared);
     }
 
     public It<DeepType> resolve(FieldReferenceImpl fieldRef)
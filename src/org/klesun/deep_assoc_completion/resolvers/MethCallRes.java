@@ -153,8 +153,8 @@ public class MethCallRes extends Lang
                 .fap(mt -> mt.types)
                 .fch(strType -> {
                     DeepType fetchType = parseSqlSelect(strType, meth.getProject());
-                    type.pdoFetchTypes.add(fetchType);
-                    getBindVars(strType).fch(type.pdoBindVars::add);
+                    type.addPdoFetchType(fetchType);
+                    getBindVars(strType).fch(varName -> type.addPdoBindVar(varName));
                 });
             types = It(list(type));
         } else if (clsNme.equals("PDOStatement") && meth.getName().equals("fetch")
@@ -163,7 +163,7 @@ public class MethCallRes extends Lang
             It<DeepType> pdoTypes = opt(methCall.getClassReference())
                 .fop(toCast(PhpExpression.class))
                 .fap(obj -> ctx.findExprType(obj))
-                .fap(t -> t.pdoFetchTypes);
+                .fap(t -> t.getPdoFetchTypes());
             types = It(pdoTypes);
         } else if (clsNme.equals("mysqli") && meth.getName().equals("query")) {
             MemIt<DeepType> rowTypes = argCtx.func().getArg(0).fap(mt -> mt.types)
@@ -172,7 +172,7 @@ public class MethCallRes extends Lang
             types = It.cnc(
                 som(new DeepType(methCall).btw(t -> {
                     // it's not a PDO, but nah
-                    rowTypes.itr().fch((rowt, i) -> t.pdoFetchTypes.add(rowt));
+                    rowTypes.itr().fch((rowt, i) -> t.addPdoFetchType(rowt));
                 })),
                 // since PHP 5.4 mysqli_result can also be iterated
                 som(Mt.getInArraySt(It(rowTypes), methCall))
@@ -206,7 +206,9 @@ public class MethCallRes extends Lang
                 }
             }
             IExprCtx finalCtx = funcCtx;
-            return impls.fap(m -> It.cnc(
+            // doc and declared return type are read without resolving any expression there
+            impls.fch(m -> finalCtx.addDependency(m));
+            It<DeepType> docTit = It.cnc(
                 opt(meth.getDocComment()).map(doc -> doc.getReturnTag())
                     .fap(tag -> parseReturnDoc(tag, finalCtx)),
                 Tls.cast(PhpDocMethod.class, meth)
@@ -222,10 +224,17 @@ public class MethCallRes extends Lang
                             String fullDescr = descrPart + "\n" + valuePart;
                             return new DocParamRes(finalCtx)
                                 .parseEqExpression(fullDescr, doc);
-                        })),
-                opt(m.getReturnType()).fap(rt -> list(new DeepType(rt, rt.getType()))),
-                ClosRes.getReturnedValue(m, finalCtx)
-            ));
+                        }))
+            );
+            It<DeepType> declTit = impls
+                .fap(m -> opt(m.getReturnType()).fap(rt -> list(new DeepType(rt, rt.getType()))));
+            // abstract method may have dozens of implementations, one of
+            // which may be huge - should not stop others from being resolved
+            It<DeepType> bodyTit = finalCtx.getSearch()
+                .fair(impls.map(m -> ClosRes.getReturnedValue(m, finalCtx)));
+            // same order as before for a single method; for an abstract one the docs and declared
+            // types of all implementations go before any body, since they cost next to nothing
+            return It.cnc(docTit, declTit, bodyTit);
         };
     }
 
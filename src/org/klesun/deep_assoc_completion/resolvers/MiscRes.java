@@ -118,11 +118,11 @@ public class MiscRes extends Lang
             return som(DeepType.makeInt(deepType.definition, deepType.stringValue));
         } else if (phpType.equals("array")) {
             DeepType arrt = new DeepType(deepType.definition, PhpType.ARRAY);
-            arrt.keys.addAll(deepType.keys.cct(deepType.props.vls()));
+            arrt.keys.addAll(deepType.keys.cct(deepType.getProps()));
             return som(arrt);
         } else if (phpType.equals("object")) {
             DeepType objt = new DeepType(deepType.definition, PhpType.OBJECT);
-            deepType.props.vls().cct(deepType.keys)
+            deepType.getProps().cct(deepType.keys)
                 .fch(k -> k.keyType.getNames()
                     .fch(n -> objt.addProp(n, k.definition)
                         .addType(() -> new Mt(k.getTypes()))));
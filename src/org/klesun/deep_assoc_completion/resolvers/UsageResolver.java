@@ -226,7 +226,7 @@ public class UsageResolver
             .fop(toCast(MethodReference.class))
             .fop(methRef -> opt(methRef.getClassReference()))
             .fap(clsRef -> fakeCtx.findExprType(clsRef))
-            .map(pdostt -> makeAssoc(pdostt.definition, It(pdostt.pdoBindVars)
+            .map(pdostt -> makeAssoc(pdostt.definition, pdostt.getPdoBindVars()
                 .map(varName -> T2(varName, pdostt.definition))));
     }
 
@@ -342,7 +342,7 @@ public class UsageResolver
                     .fap(fld -> opt(fld.getClassReference()))
                     .fap(fld -> fakeCtx.findExprType(fld))
                     // TODO: add declared field names here too
-                    .fap(objt -> objt.props.vls())
+                    .fap(objt -> objt.getProps())
                     .fap(prop -> prop.keyType.getTypes()),
                 // $this->props[$varName]
                 opt(refVar.getParent())
@@ -15,6 +15,7 @@ import org.klesun.deep_assoc_completion.helpers.*;
 import org.klesun.deep_assoc_completion.resolvers.var_res.ArgRes;
 import org.klesun.deep_assoc_completion.resolvers.var_res.AssRes;
 import org.klesun.deep_assoc_completion.resolvers.var_res.DocParamRes;
+import org.klesun.deep_assoc_completion.resolvers.var_res.VarDefTable;
 import org.klesun.deep_assoc_completion.structures.Assign;
 import org.klesun.deep_assoc_completion.structures.DeepType;
 import org.klesun.deep_assoc_completion.structures.KeyType;
@@ -147,8 +148,7 @@ public class VarRes
         return Tls.cast(Variable.class, varRef)
             .flt(varPsi -> VarNamePvdr.isGlobalContext(varPsi))
             .flt(varPsi -> !"".equals(varPsi.getName()))
-            .map(varPsi -> () -> VarNamePvdr.resolveGlobalsMagicVar(ctx, varPsi)
-                .fap(globt -> Mt.getKeySt(globt, varPsi.getName())));
+            .map(varPsi -> () -> VarNamePvdr.resolveGlobalVar(ctx, varPsi));
     }
 
     private Opt<S<It<DeepType>>> assertTupleAssignment(PsiElement varRef)
@@ -197,18 +197,18 @@ public class VarRes
             });
     }
 
+    /** declarations that may have happened before the variable */
     private static It<PsiElement> findDeclarations(Variable variable)
     {
         // if this line is still here when you read this, that means I
         // decided to just do DumbService::isDumb() check in Type Provider
-        return It(variable.multiResolve(false))
-            .fop(res -> opt(res.getElement()));
+        return It(VarDefTable.getDefs(variable))
+            .flt(refPsi -> ScopeFinder.didPossiblyHappen(refPsi, variable));
     }
 
     public It<DeepType> getDocType(Variable variable)
     {
         return findDeclarations(variable)
-            .flt(refPsi -> ScopeFinder.didPossiblyHappen(refPsi, variable))
             .fop(toCast(PhpDocVarImpl.class))
             .fop(varDoc -> opt(varDoc.getParent()))
             .fop(toCast(PhpDocTag.class))
@@ -251,9 +251,7 @@ public class VarRes
 
     public It<DeepType> resolve(Variable caretVar)
     {
-        It<PsiElement> references = findDeclarations(caretVar)
-            .flt(refPsi -> ScopeFinder.didPossiblyHappen(refPsi, caretVar))
-            ;
+        It<PsiElement> references = findDeclarations(caretVar);
 
         // @var docs are a special case since they give type
         // info from any position (above/below/right of/left of the var declaration)
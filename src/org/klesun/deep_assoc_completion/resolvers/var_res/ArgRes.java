@@ -9,12 +9,12 @@ import com.jetbrains.php.lang.documentation.phpdoc.psi.impl.tags.PhpDocDataProvi
 import com.jetbrains.php.lang.psi.elements.Function;
 import com.jetbrains.php.lang.psi.elements.FunctionReference;
 import com.jetbrains.php.lang.psi.elements.PhpExpression;
-import com.jetbrains.php.lang.psi.elements.StringLiteralExpression;
 import com.jetbrains.php.lang.psi.elements.impl.*;
 import org.jetbrains.annotations.Nullable;
 import org.klesun.deep_assoc_completion.built_in_typedefs.Cst;
 import org.klesun.deep_assoc_completion.contexts.IExprCtx;
 import org.klesun.deep_assoc_completion.helpers.Mt;
+import org.klesun.deep_assoc_completion.indexes.CallSiteIndex;
 import org.klesun.deep_assoc_completion.resolvers.ClosRes;
 import org.klesun.deep_assoc_completion.resolvers.MethCallRes;
 import org.klesun.deep_assoc_completion.resolvers.UsageResolver;
@@ -22,6 +22,7 @@ import org.klesun.deep_assoc_completion.structures.ArgOrder;
 import org.klesun.deep_assoc_completion.structures.DeepType;
 import org.klesun.deep_assoc_completion.structures.Mkt;
 import org.klesun.lang.It;
+import org.klesun.lang.L;
 import org.klesun.lang.Lang;
 import org.klesun.lang.Opt;
 import org.klesun.lang.Tls;
@@ -170,8 +171,13 @@ public class ArgRes extends Lang
             .flt(a -> func.getParameters().length > 0)
             .fap(meth -> {
                 PsiFile file = func.getContainingFile();
+                trace.addDependency(file);
+                L<PsiElement> callSites = CallSiteIndex.findCallSites(file, meth.getName()).uni(
+                    sites -> sites.arr(),
+                    () -> L(PsiTreeUtil.findChildrenOfAnyType(file, MethodReferenceImpl.class, ArrayCreationExpressionImpl.class))
+                );
                 return It.cnc(
-                    It(PsiTreeUtil.findChildrenOfType(file, MethodReferenceImpl.class))
+                    callSites.cst(MethodReferenceImpl.class)
                         .flt(call -> meth.getName().equals(call.getName()))
                         .flt(call -> opt(call.getClassReference()).map(ref -> ref.getText())
                             .flt(txt -> txt.equals("$this") || txt.equals("self") ||
@@ -180,17 +186,10 @@ public class ArgRes extends Lang
                         .fop(call -> L(call.getParameters()).gat(argOrderInLambda))
                         .fop(toCast(PhpExpression.class))
                         .fap(arg -> trace.subCtxEmpty().findExprType(arg)),
-                    It(PsiTreeUtil.findChildrenOfType(file, ArrayCreationExpressionImpl.class))
-                        .flt(arr -> arr.getChildren().length == 2
-                                && L(arr.getChildren()).gat(0)
-                                    .flt(psi -> psi.getText().equals("$this")
-                                            || psi.getText().equals("self::class")
-                                            || psi.getText().equals("static::class"))
-                                    .has()
-                                && L(arr.getChildren()).gat(1).map(psi -> psi.getFirstChild())
-                                    .fop(toCast(StringLiteralExpression.class))
-                                    .flt(str -> str.getContents().equals(meth.getName()))
-                                    .has())
+                    callSites.cst(ArrayCreationExpressionImpl.class)
+                        .flt(arr -> CallSiteIndex.getCallableArrName(arr)
+                            .flt(name -> name.equals(meth.getName()))
+                            .has())
                         .fap(arr -> It.frs(
                             () -> new ArgRes(trace.subCtxEmpty())
                                 .getInlineFuncArg(arr, argOrderInLambda),
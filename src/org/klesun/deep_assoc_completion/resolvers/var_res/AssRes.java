@@ -6,6 +6,7 @@ import com.jetbrains.php.lang.psi.elements.PhpExpression;
 import com.jetbrains.php.lang.psi.elements.impl.*;
 import com.jetbrains.php.lang.psi.resolve.types.PhpType;
 import org.klesun.deep_assoc_completion.contexts.IExprCtx;
+import org.klesun.deep_assoc_completion.entry.DeepSettings;
 import org.klesun.deep_assoc_completion.structures.Assign;
 import org.klesun.deep_assoc_completion.structures.DeepType;
 import org.klesun.deep_assoc_completion.helpers.*;
@@ -27,6 +28,12 @@ public class AssRes extends Lang
         this.ctx = ctx;
     }
 
+    private static void addValueGetter(DeepType.Key key, L<KeyType> furtherKeys, S<? extends Iterable<DeepType>> getType, PsiElement psi, PhpType briefType)
+    {
+        S<Iterable<DeepType>> memoized = Tls.onDemand(() -> new MemIt<>(getType.get()));
+        key.addType(() -> makeType(furtherKeys, memoized, psi, briefType).wap(Mt::new), briefType);
+    }
+
     private static It<DeepType> makeType(L<KeyType> keys, S<? extends Iterable<DeepType>> getType, PsiElement psi, PhpType briefType)
     {
         if (keys.size() == 0) {
@@ -34,17 +41,41 @@ public class AssRes extends Lang
         } else {
             DeepType arr = new DeepType(psi, PhpType.ARRAY);
             KeyType nextKey = keys.get(0);
-            L<KeyType> furtherKeys = keys.sub(1);
-            S<Iterable<DeepType>> memoized = Tls.onDemand(() -> new MemIt<>(getType.get()));
-            arr.addKey(nextKey, nextKey.definition).addType(() ->
-                makeType(furtherKeys, memoized, psi, briefType).wap(Mt::new), briefType);
+            addValueGetter(arr.addKey(nextKey, nextKey.definition), keys.sub(1), getType, psi, briefType);
             return It(list(arr));
         }
     }
 
+    /**
+     * key assignments in many branches or loop iterations are joined into one array
+     * type with a key per assignment, rather than making an array type per assignment
+     */
+    private static DeepType widen(L<Assign> keyAsses)
+    {
+        DeepType arr = new DeepType(keyAsses.get(0).psi, PhpType.ARRAY);
+        for (Assign ass: keyAsses) {
+            KeyType keyType = ass.keys.get(0);
+            addValueGetter(arr.addKey(keyType, keyType.definition), L(ass.keys).sub(1), ass.assignedType, ass.psi, ass.briefType);
+        }
+        return arr;
+    }
+
     public static It<DeepType> assignmentsToTypes(Iterable<Assign> asses)
     {
-        return It(asses).fap(ass -> makeType(L(ass.keys), ass.assignedType, ass.psi, ass.briefType));
+        MemIt<Assign> assMit = It(asses).mem();
+        return It.frs(
+            () -> assMit.fst()
+                .map(ass -> DeepSettings.inst(ass.psi.getProject()).assignmentWideningThreshold)
+                .flt(max -> assMit.flt(ass -> ass.keys.size() > 0).lmt(max + 1).arr().size() > max)
+                .fap(max -> {
+                    L<Assign> keyAsses = assMit.flt(ass -> ass.keys.size() > 0).arr();
+                    // summary array takes the place of the first key assignment
+                    return assMit.fap(ass -> ass.keys.size() == 0
+                        ? It(ass.assignedType.get())
+                        : ass == keyAsses.get(0) ? It(list(widen(keyAsses))) : It.<DeepType>non());
+                }),
+            () -> assMit.fap(ass -> makeType(L(ass.keys), ass.assignedType, ass.psi, ass.briefType))
+        );
     }
 
     // null in key chain means index (when it is number or variable, not named key)
@@ -79,7 +110,7 @@ public class AssRes extends Lang
             .map(value -> T2(keys, () -> ctx.findExprType(value)));
     }
 
-    private static Opt<AssignmentExpressionImpl> findParentAssignment(PsiElement caretVar) {
+    public static Opt<AssignmentExpressionImpl> findParentAssignment(PsiElement caretVar) {
         return opt(caretVar.getParent())
             .fop(parent -> Opt.fst(
                 () -> Tls.cast(ArrayAccessExpression.class, parent)
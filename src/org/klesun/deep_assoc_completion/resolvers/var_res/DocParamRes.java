@@ -144,6 +144,7 @@ public class DocParamRes extends Lang
 
     private It<DeepType> parseDoc(PhpDocTag doc)
     {
+        ctx.addDependency(doc);
         String tagValue = doc.getTagValue();
         return It.cnc(
             parseEqExpression(tagValue, doc),
@@ -0,0 +1,129 @@
+package org.klesun.deep_assoc_completion.resolvers.var_res;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiElement;
+import com.jetbrains.php.lang.psi.elements.Function;
+import com.jetbrains.php.lang.psi.elements.PhpUseList;
+import com.jetbrains.php.lang.psi.elements.Variable;
+import org.klesun.lang.L;
+import org.klesun.lang.Lang;
+import org.klesun.lang.Opt;
+import org.klesun.lang.Tls;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * declarations of variables of a function body (assignments, foreach, list(),
+ * array_push(), params, @var docs...) by variable name, so that every reference
+ * to the variable in the function did not resolve them again - in a long legacy
+ * function with hundreds of `$result['x'] = ...` lines each of them used to
+ * resolve the variable through whole function body again
+ *
+ * declarations are collected with IDEA's resolve on first lookup of a name
+ * and kept per project till the file is modified
+ */
+public class VarDefTable extends Lang
+{
+    // guard against memory overflow - every table keeps PSI of the whole function
+    final private static int MAX_SCOPES = 500;
+
+    private static class ScopeDefs
+    {
+        final private PsiElement scope;
+        final private long stamp;
+        final private Map<String, L<PsiElement>> nameToDefs = new HashMap<>();
+
+        private ScopeDefs(PsiElement scope, long stamp)
+        {
+            this.scope = scope;
+            this.stamp = stamp;
+        }
+
+        private boolean isUpToDate()
+        {
+            return scope.isValid() && getStamp(scope) == stamp;
+        }
+    }
+
+    final private Map<PsiElement, ScopeDefs> scopeToDefs = new LinkedHashMap<PsiElement, ScopeDefs>(16, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry<PsiElement, ScopeDefs> eldest) {
+            return size() > MAX_SCOPES;
+        }
+    };
+
+    public static Opt<VarDefTable> inst(Project project)
+    {
+        return opt(ServiceManager.getService(project, VarDefTable.class));
+    }
+
+    /** function variable belongs to or the file if it is in global scope */
+    public static Opt<PsiElement> getScope(Variable variable)
+    {
+        Opt<PsiElement> funcScope = Tls.findParent(variable, Function.class, a -> true)
+            .fop(func -> variable.getParent() instanceof PhpUseList
+                ? Tls.findParent(func, Function.class, a -> true) : som(func))
+            .map(func -> func);
+        return funcScope.has() ? funcScope : opt(variable.getContainingFile());
+    }
+
+    private static long getStamp(PsiElement scope)
+    {
+        return opt(scope.getContainingFile()).map(f -> f.getModificationStamp()).def(-1L);
+    }
+
+    private synchronized ScopeDefs getScopeDefs(PsiElement scope)
+    {
+        ScopeDefs defs = scopeToDefs.get(scope);
+        if (defs == null || !defs.isUpToDate()) {
+            defs = new ScopeDefs(scope, getStamp(scope));
+            scopeToDefs.put(scope, defs);
+        }
+        return defs;
+    }
+
+    private synchronized Opt<L<PsiElement>> getCached(ScopeDefs scopeDefs, String name)
+    {
+        return opt(scopeDefs.nameToDefs.get(name));
+    }
+
+    private synchronized void cache(ScopeDefs scopeDefs, String name, L<PsiElement> defs)
+    {
+        scopeDefs.nameToDefs.put(name, defs);
+    }
+
+    private static L<PsiElement> resolve(Variable variable)
+    {
+        return It(variable.multiResolve(false))
+            .fop(res -> opt(res.getElement()))
+            .arr();
+    }
+
+    private L<PsiElement> getDefs(Variable variable, String name, PsiElement scope)
+    {
+        ScopeDefs scopeDefs = getScopeDefs(scope);
+        Opt<L<PsiElement>> cached = getCached(scopeDefs, name);
+        if (cached.has()) {
+            return cached.unw();
+        }
+        // resolved outside of the lock, IDEA may need to wait for indexes
+        L<PsiElement> defs = resolve(variable);
+        cache(scopeDefs, name, defs);
+        return defs;
+    }
+
+    /** @return declarations of the variable in the order IDEA resolved them */
+    public static L<PsiElement> getDefs(Variable variable)
+    {
+        String name = opt(variable.getName()).def("");
+        Opt<PsiElement> scopeOpt = getScope(variable);
+        Opt<VarDefTable> tableOpt = inst(variable.getProject());
+        if (name.equals("") || !scopeOpt.has() || !tableOpt.has()) {
+            // $$varName and such - nothing to share with
+            return resolve(variable);
+        }
+        return tableOpt.unw().getDefs(variable, name, scopeOpt.unw());
+    }
+}
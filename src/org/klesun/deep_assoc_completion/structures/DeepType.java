@@ -19,17 +19,9 @@ import java.util.*;
 public class DeepType extends Lang
 {
     // maybe should make it a memoizing iterable?
+    // ArrayList does not allocate the array till first key is added
     public final L<Key> keys = new L<>();
-    // just like array keys, but dynamic object properties
-    public final Dict<Key> props = new Dict<>(L());
-    // applicable to closures and function names
-    // (starting with self::) and [$obj, 'functionName'] tuples
-    // slowly migrating returnTypes from constant values to a function
-    // list of functions that take arg list and return list of return types
-    public final L<F<IExprCtx, MemIt<DeepType>>> returnTypeGetters = L();
-    public final L<DeepType> pdoFetchTypes = L();
-    public final LinkedHashSet<String> pdoBindVars = new LinkedHashSet<>();
-    public Opt<IExprCtx> ctorArgs = opt(null);
+    public Opt<IExprCtx> ctorArgs = non();
     public Opt<PhpType> clsRefType = non();
     // constant name
     public Opt<String> cstName = non();
@@ -38,8 +30,36 @@ public class DeepType extends Lang
     public final PhpType briefType;
     public boolean isNumber = false;
     final public boolean isExactPsi;
+    // most types are strings and numbers, so stuff that only objects, closures
+    // and PDO statements have is allocated on first write, same for key index
+    private @Nullable Ext ext = null;
+    private @Nullable KeyIndex keyIndex = null;
 
-    private DeepType(PsiElement definition, PhpType briefType, String stringValue, boolean isExactPsi)
+    private static class Ext
+    {
+        // just like array keys, but dynamic object properties
+        final Dict<Key> props = new Dict<>(L());
+        // applicable to closures and function names
+        // (starting with self::) and [$obj, 'functionName'] tuples
+        // slowly migrating returnTypes from constant values to a function
+        // list of functions that take arg list and return list of return types
+        final L<F<IExprCtx, MemIt<DeepType>>> returnTypeGetters = L();
+        final L<DeepType> pdoFetchTypes = L();
+        final LinkedHashSet<String> pdoBindVars = new LinkedHashSet<>();
+    }
+
+    /** index of `keys` for lookup by name, see getKeysOfName() */
+    private static class KeyIndex
+    {
+        // keys with a literal name, like `['id' => 123]`
+        final Map<String, L<Integer>> nameToKeyIdxs = new HashMap<>();
+        // keys which name is resolved lazily, like `$arr[$i] = ...`, they are checked
+        // on every lookup, since their types may still be growing when index is built
+        final L<Integer> otherKeyIdxs = L();
+        int indexedKeyCnt = 0;
+    }
+
+    DeepType(PsiElement definition, PhpType briefType, String stringValue, boolean isExactPsi)
     {
         this.definition = definition;
         this.briefType = briefType.filterUnknown().filterMixed();
@@ -96,9 +116,65 @@ public class DeepType extends Lang
         return self;
     }
 
+    private Ext ext()
+    {
+        if (ext == null) {
+            ext = new Ext();
+        }
+        return ext;
+    }
+
     public It<DeepType> getReturnTypes(IExprCtx ctx)
     {
-        return returnTypeGetters.fap(g -> g.apply(ctx));
+        return ext == null ? It.non() : ext.returnTypeGetters.fap(g -> g.apply(ctx));
+    }
+
+    public boolean hasReturnTypeGetters()
+    {
+        return ext != null && ext.returnTypeGetters.has();
+    }
+
+    public DeepType addReturnTypeGetter(F<IExprCtx, MemIt<DeepType>> getter)
+    {
+        ext().returnTypeGetters.add(getter);
+        return this;
+    }
+
+    public It<Key> getProps()
+    {
+        return ext == null ? It.non() : ext.props.vls();
+    }
+
+    public It<String> getPropNames()
+    {
+        return ext == null ? It.non() : ext.props.kys();
+    }
+
+    public boolean hasProps()
+    {
+        return ext != null && ext.props.size() > 0;
+    }
+
+    public It<DeepType> getPdoFetchTypes()
+    {
+        return ext == null ? It.non() : ext.pdoFetchTypes.itr();
+    }
+
+    public DeepType addPdoFetchType(DeepType fetchType)
+    {
+        ext().pdoFetchTypes.add(fetchType);
+        return this;
+    }
+
+    public It<String> getPdoBindVars()
+    {
+        return ext == null ? It.non() : It(ext.pdoBindVars);
+    }
+
+    public DeepType addPdoBindVar(String varName)
+    {
+        ext().pdoBindVars.add(varName);
+        return this;
     }
 
     public It<DeepType> getListElemTypes()
@@ -109,10 +185,79 @@ public class DeepType extends Lang
             .fap(k -> k.typeGetters.fap(mtg -> mtg.get().types));
     }
 
+    private static boolean matches(KeyType keyType, String keyName)
+    {
+        if (keyType.literal != null) {
+            return keyType.literal.equals(keyName);
+        }
+        return keyType.getTypes()
+            .any(kt -> keyName.equals(kt.stringValue)
+                || kt.stringValue == null
+                && (!kt.isNumber() || Tls.isNum(keyName)));
+    }
+
+    private void addToIndex(Map<String, L<Integer>> nameToIdxs, String name, int idx)
+    {
+        if (!nameToIdxs.containsKey(name)) {
+            nameToIdxs.put(name, L());
+        }
+        nameToIdxs.get(name).add(idx);
+    }
+
+    /**
+     * keys may be added after the lookup, so index is extended with them on each lookup,
+     * only literal names are indexed, so nothing is resolved while the lock is held
+     */
+    private synchronized KeyIndex indexKeys()
+    {
+        if (keyIndex == null) {
+            keyIndex = new KeyIndex();
+        }
+        KeyIndex index = keyIndex;
+        for (; index.indexedKeyCnt < keys.size(); ++index.indexedKeyCnt) {
+            int idx = index.indexedKeyCnt;
+            KeyType keyType = keys.get(idx).keyType;
+            if (keyType.literal != null) {
+                addToIndex(index.nameToKeyIdxs, keyType.literal, idx);
+            } else {
+                index.otherKeyIdxs.add(idx);
+            }
+        }
+        return index;
+    }
+
+    private L<Key> findKeysOfName(String keyName)
+    {
+        TreeSet<Integer> idxs = new TreeSet<>();
+        L<Integer> otherIdxs;
+        synchronized (this) {
+            KeyIndex index = indexKeys();
+            opt(index.nameToKeyIdxs.get(keyName)).thn(idxs::addAll);
+            otherIdxs = L(new ArrayList<>(index.otherKeyIdxs));
+        }
+        // resolving these names may need this very array, so not under the lock
+        otherIdxs.flt(idx -> matches(keys.get(idx).keyType, keyName)).fch(idx -> idxs.add(idx));
+        return It(idxs).map(idx -> keys.get(idx)).arr();
+    }
+
+    /**
+     * keys that may be accessed with this name, including ones with unknown name,
+     * in order they were added - takes keys from index rather than checking each
+     * of them, since there may be hundreds of keys in a config array
+     *
+     * @param keyName - null means any key
+     */
+    public It<Key> getKeysOfName(@Nullable String keyName)
+    {
+        if (keyName == null) {
+            return keys.itr();
+        }
+        return new It<>(() -> findKeysOfName(keyName).iterator());
+    }
+
     public Key addKey(String name, PsiElement definition)
     {
-        DeepType kt = new DeepType(definition, PhpType.STRING, name);
-        KeyType keyType = KeyType.mt(som(kt), definition);
+        KeyType keyType = KeyType.lit(name, definition);
         Key keyEntry = new Key(keyType, definition);
         keys.add(keyEntry);
         return keyEntry;
@@ -132,10 +277,9 @@ public class DeepType extends Lang
 
     public Key addProp(String name, PsiElement definition)
     {
-        DeepType kt = new DeepType(definition, PhpType.STRING, name);
-        KeyType keyType = KeyType.mt(som(kt), definition);
+        KeyType keyType = KeyType.lit(name, definition);
         Key keyEntry = new Key(keyType, definition);
-        props.put(name, keyEntry);
+        ext().props.put(name, keyEntry);
         return keyEntry;
     }
 
@@ -191,6 +335,9 @@ public class DeepType extends Lang
 
         public Opt<String> getBriefKey()
         {
+            if (keyType.literal != null) {
+                return som(keyType.literal + ":");
+            }
             return It(keyType.getTypes()).fst()
                 .fop(t -> opt(t.stringValue))
                 .map(n -> n + ":");
@@ -226,7 +373,7 @@ public class DeepType extends Lang
         circularRefs.addAll(types);
 
         LinkedHashMap<String, List<DeepType>> mergedKeys = new LinkedHashMap<>();
-        Set<String> mergedProps = new HashSet<>(L(types).fap(t -> t.props.kys()).arr());
+        Set<String> mergedProps = new HashSet<>(L(types).fap(t -> t.getPropNames()).arr());
         List<DeepType> indexTypes = list();
         List<String> briefTypes = list();
 
@@ -273,10 +420,10 @@ public class DeepType extends Lang
             typeInfo = "'" + stringValue + "'";
         } else if (keys.has()) {
             typeInfo = "[" + keys.fap(k -> k.getBriefKey()).unq().str() + "]";
-        } else if (returnTypeGetters.has()) {
+        } else if (hasReturnTypeGetters()) {
             typeInfo = "(...) ==> {...}";
-        } else if (props.size() > 0) {
-            typeInfo = "obj(" + props.kys().str() + ")";
+        } else if (hasProps()) {
+            typeInfo = "obj(" + getPropNames().str() + ")";
         }
         return opt(typeInfo);
     }
@@ -2,6 +2,7 @@ package org.klesun.deep_assoc_completion.structures;
 
 import com.intellij.psi.PsiElement;
 import com.jetbrains.php.lang.psi.resolve.types.PhpType;
+import org.jetbrains.annotations.Nullable;
 import org.klesun.lang.It;
 import org.klesun.lang.MemIt;
 
@@ -10,13 +11,27 @@ import static org.klesun.lang.Lang.*;
 /** is there actually a point in having this and Mt as two separate classes? */
 public class KeyType
 {
-    final public MemIt<DeepType> getTypes;
+    private MemIt<DeepType> getTypes;
     final public PsiElement definition;
+    /**
+     * name of a constant key like `'id'` or `0` in `['id' => 5]`, there are tens of
+     * thousands of these in big config arrays, so DeepType of the name is created
+     * only when someone asks for it - names are compared with equals() as any string
+     */
+    final public @Nullable String literal;
 
     private KeyType(MemIt<DeepType> getTypes, PsiElement definition)
     {
         this.definition = definition;
         this.getTypes = getTypes;
+        this.literal = null;
+    }
+
+    private KeyType(String literal, PsiElement definition)
+    {
+        this.definition = definition;
+        this.getTypes = null;
+        this.literal = literal;
     }
 
     public static KeyType mt(Iterable<DeepType> mtg, PsiElement definition)
@@ -25,6 +40,11 @@ public class KeyType
         return new KeyType(It(mtg).def(anyt).mem(), definition);
     }
 
+    public static KeyType lit(String name, PsiElement definition)
+    {
+        return new KeyType(name, definition);
+    }
+
     public static KeyType integer(PsiElement psi)
     {
         return new KeyType(new MemIt<>(som(new DeepType(psi, PhpType.INT))), psi);
@@ -35,14 +55,19 @@ public class KeyType
         return new KeyType(new MemIt<>(som(new DeepType(psi, PhpType.MIXED))), psi);
     }
 
-    public MemIt<DeepType> getTypes()
+    public synchronized MemIt<DeepType> getTypes()
     {
+        if (getTypes == null) {
+            getTypes = new MemIt<>(som(new DeepType(definition, PhpType.STRING, literal)));
+        }
         return getTypes;
     }
 
     public It<String> getNames()
     {
-        return getTypes().fap(t -> opt(t.stringValue));
+        return literal != null
+            ? It(som(literal))
+            : getTypes().fap(t -> opt(t.stringValue));
     }
 
     public It<T2<String, DeepType>> getNameToMt()
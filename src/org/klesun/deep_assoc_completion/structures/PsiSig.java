@@ -1,40 +1,60 @@
 package org.klesun.deep_assoc_completion.structures;
 
 import com.intellij.psi.PsiElement;
+import org.jetbrains.annotations.Nullable;
 import org.klesun.deep_assoc_completion.contexts.IExprCtx;
-import org.klesun.lang.L;
+import org.klesun.deep_assoc_completion.contexts.IFuncCtx;
 import org.klesun.lang.Tls;
 
-import static org.klesun.lang.Lang.list;
+import java.util.Objects;
 
 /**
  * defies a uniqueness of a PSI
  * needed because there are PSI created dynamically by us from phpdoc text
+ *
+ * does not keep the expression context itself, since signatures
+ * are kept in search cache after the expression is resolved
+ *
+ * everything compared is taken at construction, since signatures are looked
+ * up in cache on every resolved expression, and psi.getText() of a big
+ * expression (a whole function body) is costly to get every time
+ *
+ * PSI parsed from phpdoc has the doc comment as real PSI, and offsets
+ * in a separate fake file, so its text is compared as well - it is
+ * short, unlike text of real PSI that could be a whole function
  */
 public class PsiSig {
-    final private PsiElement psi;
-    final private IExprCtx ctx;
+    final private PsiElement realPsi;
+    final private IFuncCtx func;
+    final private int offset;
+    final private int length;
+    final private Class<? extends PsiElement> psiClass;
+    final private @Nullable String fakeText;
+    final private int hash;
 
     public PsiSig(PsiElement psi, IExprCtx ctx) {
-        this.psi = psi;
-        this.ctx = ctx;
-    }
-
-    private L<Object> getHashValues() {
-        PsiElement realPsi = ctx.getFakeFileSource().def(psi);
-        return list(realPsi, ctx.func());
+        this.realPsi = ctx.getFakeFileSource().def(psi);
+        this.func = ctx.func();
+        this.offset = psi.getTextOffset();
+        this.length = psi.getTextLength();
+        this.psiClass = psi.getClass();
+        this.fakeText = psi != realPsi ? psi.getText() : null;
+        this.hash = Objects.hash(realPsi, func, fakeText);
     }
 
     public int hashCode() {
-        return getHashValues().hashCode();
+        return hash;
     }
 
     public boolean equals(Object thatRaw) {
         return Tls.cast(PsiSig.class, thatRaw)
             .any(that ->
-                this.getHashValues().equals(that.getHashValues()) &&
-                this.psi.getTextOffset() == that.psi.getTextOffset() &&
-                this.psi.getClass().equals(that.psi.getClass()) &&
-                this.psi.getText().equals(that.psi.getText()));
+                this.hash == that.hash &&
+                this.offset == that.offset &&
+                this.length == that.length &&
+                this.psiClass.equals(that.psiClass) &&
+                Objects.equals(this.fakeText, that.fakeText) &&
+                this.realPsi.equals(that.realPsi) &&
+                this.func.equals(that.func));
     }
 }
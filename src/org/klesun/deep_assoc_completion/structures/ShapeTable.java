@@ -0,0 +1,152 @@
+package org.klesun.deep_assoc_completion.structures;
+
+import org.klesun.lang.L;
+import org.klesun.lang.Lang;
+import org.klesun.lang.Opt;
+import org.klesun.lang.Tls;
+
+import java.util.*;
+
+/**
+ * canonicalizes array shapes of a finished expression: when a DeepType was built
+ * from same psi with same key value types as some type met before (like a function
+ * return built again through another call path), the first one is used instead,
+ * so that type lists in recursive code did not grow exponentially
+ *
+ * only values that were already resolved by someone are compared - a type with
+ * a key not resolved yet, a dynamic key name or a reference to itself is kept as is
+ */
+public class ShapeTable extends Lang
+{
+    final private static int MAX_DEPTH = 3;
+    // do not try to fingerprint types that exploded already
+    final private static int MAX_VALUE_TYPES = 50;
+    final private static int MAX_CANDIDATES = 20;
+
+    // key names and definitions -> full fingerprint -> first type met with it
+    final private Map<L<Object>, Map<L<Object>, DeepType>> shallowToShapes = new HashMap<>();
+
+    /** PSI in a fingerprint, compared by reference, so that two definitions never matched */
+    private static class Ref
+    {
+        final private Object obj;
+
+        Ref(Object obj)
+        {
+            this.obj = obj;
+        }
+
+        public int hashCode()
+        {
+            return System.identityHashCode(obj);
+        }
+
+        public boolean equals(Object thatRaw)
+        {
+            return Tls.cast(Ref.class, thatRaw)
+                .any(that -> this.obj == that.obj);
+        }
+    }
+
+    /** only plain arrays are merged, closures/objects/etc. are kept as is */
+    private static boolean isPlainArr(DeepType t)
+    {
+        return t.keys.size() > 0
+            && !t.hasReturnTypeGetters()
+            && !t.getPdoFetchTypes().has()
+            && !t.hasProps()
+            && !t.ctorArgs.has()
+            && !t.clsRefType.has()
+            && !t.cstName.has();
+    }
+
+    private static L<Object> getLeafFingerprint(DeepType t)
+    {
+        return list(
+            t.stringValue == null ? "" : "'" + t.stringValue + "'",
+            t.briefType.toString(), t.isNumber,
+            t.clsRefType.map(typ -> typ.toString()).def(""),
+            t.cstName.def(""),
+            new Ref(t.definition)
+        );
+    }
+
+    /** @return non() if some key name is not a literal */
+    private static Opt<L<Object>> getShallowFingerprint(DeepType t)
+    {
+        L<Object> result = getLeafFingerprint(t);
+        for (DeepType.Key k: t.keys) {
+            if (k.keyType.literal == null) {
+                return non();
+            }
+            result.add(k.keyType.literal);
+            result.add(new Ref(k.definition));
+            result.add(k.getBriefTypes().str("|"));
+        }
+        return som(result);
+    }
+
+    /** @return non() if some value was not resolved yet or type is too big to compare */
+    private static Opt<L<Object>> getDeepFingerprint(DeepType t, int depth, Set<DeepType> visiting)
+    {
+        if (!isPlainArr(t)) {
+            // closures, objects and such - same only if built from same psi, while props and
+            // fetch columns of a pdo statement are not compared, so such types are kept as is
+            return t.keys.size() > 0 || t.hasReturnTypeGetters() || t.ctorArgs.has()
+                || t.hasProps() || t.getPdoFetchTypes().has() || t.getPdoBindVars().has()
+                ? non() : som(getLeafFingerprint(t));
+        } else if (depth >= MAX_DEPTH || !visiting.add(t)) {
+            return non();
+        }
+        Opt<L<Object>> shallowFp = getShallowFingerprint(t);
+        if (!shallowFp.has()) {
+            return non();
+        }
+        L<Object> result = list(shallowFp.unw());
+        for (DeepType.Key k: t.keys) {
+            L<Tls.OnDemand<Mt>> getters = k.getTypeGetters();
+            if (getters.any(g -> !g.has())) {
+                return non();
+            }
+            L<DeepType> valTypes = getters.fap(g -> g.ifHas()).fap(mt -> mt.types).arr();
+            if (valTypes.size() > MAX_VALUE_TYPES) {
+                return non();
+            }
+            // order of value types does not matter
+            Set<L<Object>> valFps = new HashSet<>();
+            for (DeepType valT: valTypes) {
+                Opt<L<Object>> valFp = getDeepFingerprint(valT, depth + 1, visiting);
+                if (!valFp.has()) {
+                    return non();
+                }
+                valFps.add(valFp.unw());
+            }
+            result.add(valFps);
+        }
+        visiting.remove(t);
+        return som(result);
+    }
+
+    /** @return the type met before with same shape if any, otherwise passed type */
+    public DeepType intern(DeepType t)
+    {
+        if (!isPlainArr(t)) {
+            return t;
+        }
+        Opt<L<Object>> shallowFp = getShallowFingerprint(t);
+        Opt<L<Object>> deepFp = shallowFp.fop(fp -> getDeepFingerprint(t, 0, Collections.newSetFromMap(new IdentityHashMap<>())));
+        if (!shallowFp.has() || !deepFp.has()) {
+            return t;
+        }
+        Map<L<Object>, DeepType> shapes = shallowToShapes
+            .computeIfAbsent(shallowFp.unw(), fp -> new HashMap<>());
+        DeepType known = shapes.get(deepFp.unw());
+        if (known != null) {
+            return known;
+        }
+        if (shapes.size() < MAX_CANDIDATES) {
+            shapes.put(deepFp.unw(), t);
+        }
+        return t;
+    }
+}
@@ -0,0 +1,180 @@
+package org.klesun.deep_assoc_completion.structures;
+
+import com.intellij.psi.PsiElement;
+import com.jetbrains.php.lang.psi.resolve.types.PhpType;
+import org.jetbrains.annotations.Nullable;
+import org.klesun.deep_assoc_completion.helpers.Mt;
+import org.klesun.lang.L;
+import org.klesun.lang.Lang;
+import org.klesun.lang.MemIt;
+import org.klesun.lang.Opt;
+import org.klesun.lang.Tls;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * completely resolved DeepType detached from the search it was resolved in: literal
+ * data and PSI only, no lazy getters that would keep contexts of that search in memory
+ *
+ * nothing is ever changed in a snapshot once it is taken, so it can be shared between
+ * threads, each search that takes it from TypeCache gets own fresh DeepType-s from it
+ */
+public class TypeSnap extends Lang
+{
+    final private static int MAX_DEPTH = 8;
+    // bigger types are resolved again rather than kept in memory
+    final private static int MAX_NODES = 2000;
+
+    final private PsiElement definition;
+    final private PhpType briefType;
+    final private @Nullable String stringValue;
+    final private boolean isNumber;
+    final private boolean isExactPsi;
+    final private Opt<PhpType> clsRefType;
+    final private Opt<String> cstName;
+    final private L<KeySnap> keys;
+
+    private static class KeySnap
+    {
+        final @Nullable String literal;
+        // types of the key name when it is not a literal
+        final L<TypeSnap> nameTypes;
+        final PsiElement nameDefinition;
+        final PsiElement definition;
+        final L<String> comments;
+        // types of each value getter with brief type it was added with
+        final L<T2<L<TypeSnap>, PhpType>> values;
+
+        KeySnap(DeepType.Key key, L<TypeSnap> nameTypes, L<T2<L<TypeSnap>, PhpType>> values)
+        {
+            this.literal = key.keyType.literal;
+            this.nameTypes = nameTypes;
+            this.nameDefinition = key.keyType.definition;
+            this.definition = key.definition;
+            this.comments = L(key.comments).arr();
+            this.values = values;
+        }
+    }
+
+    /** what is left to walk, shared by whole snapshot */
+    private static class Budget
+    {
+        int nodesLeft = MAX_NODES;
+        final Set<DeepType> visiting = Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    private TypeSnap(DeepType t, L<KeySnap> keys)
+    {
+        this.definition = t.definition;
+        this.briefType = t.briefType;
+        this.stringValue = t.stringValue;
+        this.isNumber = t.isNumber;
+        this.isExactPsi = t.isExactPsi;
+        this.clsRefType = t.clsRefType;
+        this.cstName = t.cstName;
+        this.keys = keys;
+    }
+
+    /** closures, objects and PDO statements resolve stuff in the context they were made in */
+    private static boolean isDetachable(DeepType t)
+    {
+        return !t.hasReturnTypeGetters()
+            && !t.getPdoFetchTypes().has()
+            && !t.getPdoBindVars().has()
+            && !t.hasProps()
+            && !t.ctorArgs.has();
+    }
+
+    private static Opt<L<TypeSnap>> takeAll(Iterable<DeepType> types, int depth, Budget budget)
+    {
+        L<TypeSnap> snaps = list();
+        for (DeepType t: types) {
+            Opt<TypeSnap> snap = take(t, depth, budget);
+            if (!snap.has()) {
+                return non();
+            }
+            snaps.add(snap.unw());
+        }
+        return som(snaps);
+    }
+
+    /** @return non() if values of some getter were not resolved completely yet */
+    private static Opt<L<TypeSnap>> takeResolved(MemIt<DeepType> types, int depth, Budget budget)
+    {
+        return types.ifComplete().fop(ts -> takeAll(ts, depth, budget));
+    }
+
+    private static Opt<KeySnap> takeKey(DeepType.Key k, int depth, Budget budget)
+    {
+        Opt<L<TypeSnap>> nameTypes = k.keyType.literal != null
+            ? som(list())
+            : takeResolved(k.keyType.getTypes(), depth, budget);
+        if (!nameTypes.has()) {
+            return non();
+        }
+        L<T2<L<TypeSnap>, PhpType>> values = list();
+        L<Tls.OnDemand<Mt>> getters = k.getTypeGetters();
+        for (int i = 0; i < getters.size(); ++i) {
+            PhpType briefType = k.getBriefTypes().gat(i).def(PhpType.MIXED);
+            Opt<L<TypeSnap>> valueTypes = getters.get(i).ifHas()
+                .fop(mt -> takeResolved(mt.types, depth, budget));
+            if (!valueTypes.has()) {
+                return non();
+            }
+            values.add(T2(valueTypes.unw(), briefType));
+        }
+        return som(new KeySnap(k, nameTypes.unw(), values));
+    }
+
+    private static Opt<TypeSnap> take(DeepType t, int depth, Budget budget)
+    {
+        if (!isDetachable(t) || depth >= MAX_DEPTH
+            || --budget.nodesLeft < 0 || !budget.visiting.add(t)
+        ) {
+            return non();
+        }
+        L<KeySnap> keys = list();
+        for (DeepType.Key k: t.keys) {
+            Opt<KeySnap> key = takeKey(k, depth + 1, budget);
+            if (!key.has()) {
+                return non();
+            }
+            keys.add(key.unw());
+        }
+        budget.visiting.remove(t);
+        return som(new TypeSnap(t, keys));
+    }
+
+    /** @return non() if some of the types are not resolved completely or are bound to their context */
+    public static Opt<L<TypeSnap>> take(Iterable<DeepType> types)
+    {
+        return takeAll(types, 0, new Budget());
+    }
+
+    private static Iterable<DeepType> restoreAll(L<TypeSnap> snaps)
+    {
+        return snaps.map(snap -> snap.restore());
+    }
+
+    /** @return new DeepType with same keys and values, owned by whoever called it */
+    public DeepType restore()
+    {
+        DeepType t = new DeepType(definition, briefType, stringValue, isExactPsi);
+        t.isNumber = isNumber;
+        t.clsRefType = clsRefType;
+        t.cstName = cstName;
+        for (KeySnap k: keys) {
+            KeyType keyType = k.literal != null
+                ? KeyType.lit(k.literal, k.nameDefinition)
+                : KeyType.mt(restoreAll(k.nameTypes), k.nameDefinition);
+            DeepType.Key key = t.addKey(keyType, k.definition)
+                .addComments(k.comments);
+            for (T2<L<TypeSnap>, PhpType> value: k.values) {
+                key.addType(() -> new Mt(restoreAll(value.a)), value.b);
+            }
+        }
+        return t;
+    }
+}
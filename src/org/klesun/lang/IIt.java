@@ -3,6 +3,7 @@ package org.klesun.lang;
 import org.klesun.lang.iterators.EndIterator;
 import org.klesun.lang.iterators.FilterIterator;
 import org.klesun.lang.iterators.FlatMapIterator;
+import org.klesun.lang.iterators.FopIterator;
 import org.klesun.lang.iterators.MapIterator;
 
 import java.util.HashSet;
@@ -55,7 +56,7 @@ public interface IIt<A> extends Iterable<A> {
 
     default <B extends A> It<B> cst(Class<B> cls)
     {
-        return fap(val -> Tls.cast(cls, val));
+        return fop(val -> Tls.cast(cls, val));
     }
 
     /**
@@ -64,13 +65,13 @@ public interface IIt<A> extends Iterable<A> {
      */
     default <B> It<B> fop(Lang.F2<A, Integer, Opt<B>> convert)
     {
-        return map(convert).fap(a -> a.itr());
+        return new It<>(() -> new FopIterator<>(iterator(), convert));
     }
 
     /** flat map optional, remove elements that don't match */
     default <B> It<B> fop(Lang.F<A, Opt<B>> convert)
     {
-        return map(convert).fap(a -> a.itr());
+        return fop((el, i) -> convert.apply(el));
     }
 
     /** flat map optional, become empty optional if at least one element does not match */
@@ -2,6 +2,7 @@ package org.klesun.lang;
 
 import org.klesun.deep_assoc_completion.contexts.SearchCtx;
 import org.klesun.lang.iterators.ArrayIterator;
+import org.klesun.lang.iterators.FairIterator;
 import org.klesun.lang.iterators.ThenIterator;
 
 import java.util.Iterator;
@@ -61,6 +62,19 @@ public class It<A> implements IIt<A>
         return It(args).fap(ble -> ble);
     }
 
+    /**
+     * same as cnc(), but takes elements from branches in turns rather than draining
+     * them one by one, and postpones branches that spent more than the budget
+     *
+     * @param getSpent - measure of work done so far, like amount of resolved expressions
+     * @param limitPull - cuts a pull of a branch once getSpent() reaches the passed value,
+     *  returns the function to remove the limit that tells whether it was cut, see FairIterator
+     */
+    public static <B> It<B> fair(S<Integer> getSpent, int budget, F<Integer, S<Boolean>> limitPull, Iterable<? extends Iterable<B>> branches)
+    {
+        return new It<>(() -> new FairIterator<>(branches.iterator(), getSpent, budget, limitPull));
+    }
+
     /** don't use this unless you just want to check if it is empty */
     private Iterator<A> getIterator()
     {
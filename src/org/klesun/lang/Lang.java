@@ -151,10 +151,13 @@ public class Lang
         return substr(str, startIndex, str.length());
     }
 
+    // Opt is immutable, so all empty ones can be same instance
+    final private static Opt<?> NONE = new Opt<>(null, false);
+
     /** i HATE writing "new " before every usage! */
     public static <T> Opt<T> opt(T value)
     {
-        return new Opt<>(value);
+        return value == null ? non() : new Opt<>(value);
     }
 
     public static <T> Opt<T> som(T value)
@@ -162,9 +165,11 @@ public class Lang
         return new Opt(value, true);
     }
 
+    // empty Opt has no value of any type, so the cast is safe
+    @SuppressWarnings("unchecked")
     public static <T> Opt<T> non()
     {
-        return new Opt(null, false);
+        return (Opt<T>)NONE;
     }
 
     public static <T> Opt<T> getKey(Map<String, T> dict, String key)
@@ -1,5 +1,6 @@
 package org.klesun.lang;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -11,9 +12,15 @@ import static org.klesun.lang.Lang.It;
  */
 public class MemIt<A> implements IIt<A>
 {
-    final private Node head = new Node(null); // first value will be skipped
+    // array rather than linked nodes - one allocation per growth instead of one per element
+    final private ArrayList<A> values = new ArrayList<>();
     final private Lang.S<Iterator<A>> sourceBle;
     private boolean isNexting = false;
+    // source threw (like on cancellation) and is likely in a broken state, so
+    // values it did not give before that are not taken from it any more
+    private Throwable poisonedBy = null;
+    // source said it has nothing more, so values are all there is
+    private boolean isComplete = false;
 
     public MemIt(Iterable<A> sourceBle)
     {
@@ -24,57 +31,93 @@ public class MemIt<A> implements IIt<A>
     {
         Iterator<A> source = sourceBle.get();
         return new Iterator<A>() {
-            Node current = head;
+            int pos = 0;
             public boolean hasNext() {
-                if (isNexting) {
-                    // expression resolved through itself results in such recursion in the
-                    // iterator. I guess it's safe to answer "empty" on circular reference
+                if (pos < values.size()) {
+                    // values taken before are served even on circular reference
+                    return true;
+                } else if (isNexting) {
+                    // expression resolved through itself results in such recursion in the iterator,
+                    // answering "empty" on circular reference, SearchCtx does another round then
                     return false;
                 }
                 isNexting = true;
-                boolean has;
                 try {
-                    has = current.next != null
-                        || source.hasNext();
+                    if (pos < values.size()) {
+                        return true;
+                    }
+                    rethrowIfPoisoned();
+                    if (source.hasNext()) {
+                        return true;
+                    }
+                    isComplete = true;
+                    return false;
                 } catch (StackOverflowError exc) {
-                    throw exc;
+                    throw poison(exc);
+                } catch (RuntimeException exc) {
+                    throw poison(exc);
+                } finally {
+                    // reset even on cancellation, or memoized values would not be accessible any more
+                    isNexting = false;
                 }
-                isNexting = false;
-                return has;
             }
             public A next() {
-                if (isNexting) {
+                if (pos < values.size()) {
+                    return values.get(pos++);
+                } else if (isNexting) {
                     throw new NoSuchElementException("shalava");
                 }
                 isNexting = true;
-                if (current.next != null) {
-                    // look further
-                } else if (source.hasNext()) {
-                    A value = source.next();
-                    current.next = new Node(value);
-                } else {
-                    throw new NoSuchElementException("loh");
+                try {
+                    if (pos < values.size()) {
+                        // look further
+                    } else {
+                        rethrowIfPoisoned();
+                        if (source.hasNext()) {
+                            values.add(source.next());
+                        } else {
+                            throw new NoSuchElementException("loh");
+                        }
+                    }
+                } catch (StackOverflowError exc) {
+                    throw poison(exc);
+                } catch (NoSuchElementException exc) {
+                    throw exc;
+                } catch (RuntimeException exc) {
+                    throw poison(exc);
+                } finally {
+                    isNexting = false;
                 }
-                current = current.next;
-                isNexting = false;
-                return current.value;
+                return values.get(pos++);
             }
         };
     }
 
+    private <T extends Throwable> T poison(T exc) {
+        poisonedBy = exc;
+        return exc;
+    }
+
+    private void rethrowIfPoisoned() {
+        if (poisonedBy instanceof RuntimeException) {
+            throw (RuntimeException)poisonedBy;
+        } else if (poisonedBy instanceof Error) {
+            throw (Error)poisonedBy;
+        }
+    }
+
     public boolean has() {
         return It(this).has();
     }
 
-    private class Node
-    {
-        final A value;
-        Node next = null;
+    /** true while next element is being taken from the source - if you ask me from there, that's a circular reference */
+    public boolean isNexting() {
+        return isNexting;
+    }
 
-        public Node(A value)
-        {
-            this.value = value;
-        }
+    /** @return all values if source was iterated till the end, without taking anything from it */
+    public Opt<L<A>> ifComplete() {
+        return isComplete ? Lang.som(Lang.L(new ArrayList<>(values))) : Lang.non();
     }
 
     public L<A> arr()
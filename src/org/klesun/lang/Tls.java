@@ -1,7 +1,9 @@
 package org.klesun.lang;
 
 import com.intellij.psi.PsiElement;
+import com.jetbrains.php.lang.psi.elements.ArrayHashElement;
 import com.jetbrains.php.lang.psi.elements.PhpExpression;
+import com.jetbrains.php.lang.psi.elements.StringLiteralExpression;
 import com.jetbrains.php.lang.psi.resolve.types.PhpType;
 
 import java.io.PrintWriter;
@@ -283,6 +285,19 @@ public class Tls extends Lang
         return type;
     }
 
+    /** key name if it is a plain string literal, so it did not need to be resolved */
+    public static Opt<String> getLiteralKey(ArrayHashElement hashEl)
+    {
+        return opt(hashEl.getKey())
+            .fop(toCast(StringLiteralExpression.class))
+            // no interpolation or escapes, so that contents were exactly the key
+            .flt(lit -> lit.isSingleQuote() || !lit.getContents().contains("$") && !lit.getContents().contains("\\"))
+            .map(lit -> lit.isSingleQuote()
+                // the only escapes in single quotes: \' and \\
+                ? lit.getContents().replaceAll("\\\\([\\\\'])", "$1")
+                : lit.getContents());
+    }
+
     public static <T> T ife(boolean cond, S<T> then, S<T> els)
     {
         if (cond) {
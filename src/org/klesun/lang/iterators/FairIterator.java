@@ -0,0 +1,141 @@
+package org.klesun.lang.iterators;
+
+import org.klesun.lang.Lang;
+import org.klesun.lang.Opt;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import static org.klesun.lang.Lang.non;
+import static org.klesun.lang.Lang.som;
+
+/**
+ * takes elements from the branches in turns, one at a time, unlike FlatMapIterator
+ * which drains first branch before starting the second, so that a branch
+ * that explodes (huge function body) did not eat whole expression limit
+ * before cheaper branches yield anything
+ *
+ * a branch that spent more than the budget is put aside and
+ * continued only after all other branches are finished
+ *
+ * branches are taken from the source one by one: each new branch
+ * gets its first pull before the ones that were already pulled
+ *
+ * a pull that was cut by the limit does not mean the branch is exhausted: it is
+ * postponed and iterated from the start again later, skipping as many elements as
+ * it already yielded, so source must yield them in same order when iterated again
+ */
+public class FairIterator<A> implements Iterator<A> {
+    private final Iterator<? extends Iterable<A>> branches;
+    private final Lang.S<Integer> getSpent;
+    private final int budget;
+    private final Lang.F<Integer, Lang.S<Boolean>> limitPull;
+    private final LinkedList<Branch> active = new LinkedList<>();
+    private final LinkedList<Branch> postponed = new LinkedList<>();
+    private Opt<A> current = non();
+
+    private class Branch {
+        final Iterable<A> source;
+        Opt<Iterator<A>> iterator = non();
+        int spent = 0;
+        int yielded = 0;
+        // elements yielded before last pull was cut, to skip them when iterating again
+        int toSkip = 0;
+        boolean wasCut = false;
+
+        Branch(Iterable<A> source) {
+            this.source = source;
+        }
+
+        Iterator<A> getIterator() {
+            if (!iterator.has()) {
+                iterator = som(source.iterator());
+            }
+            return iterator.unw();
+        }
+
+        void restart() {
+            iterator = non();
+            toSkip = yielded;
+            wasCut = true;
+        }
+    }
+
+    /**
+     * @param getSpent - measure of work done so far, like amount of resolved expressions
+     * @param budget - how much work may a branch do before it is postponed
+     * @param limitPull - sets the value of getSpent() at which current pull must be cut,
+     *  since other branches are waiting for it, returns the function to remove the limit
+     *  that tells whether the pull was cut
+     */
+    public FairIterator(Iterator<? extends Iterable<A>> branches, Lang.S<Integer> getSpent, int budget, Lang.F<Integer, Lang.S<Boolean>> limitPull) {
+        this.branches = branches;
+        this.getSpent = getSpent;
+        this.budget = budget;
+        this.limitPull = limitPull;
+    }
+
+    /** @return false if branch has no more elements */
+    private boolean pull(Branch branch, boolean isContended) {
+        int before = getSpent.get();
+        Lang.S<Boolean> unlimit = isContended
+            ? limitPull.apply(before + Math.max(budget - branch.spent, 0))
+            : () -> false;
+        boolean hasNext;
+        branch.wasCut = false;
+        try {
+            Iterator<A> iter = branch.getIterator();
+            for (; branch.toSkip > 0 && iter.hasNext(); --branch.toSkip) {
+                iter.next();
+            }
+            hasNext = iter.hasNext();
+            if (hasNext) {
+                current = som(iter.next());
+                ++branch.yielded;
+            }
+        } finally {
+            if (unlimit.get()) {
+                branch.restart();
+            }
+            branch.spent += getSpent.get() - before;
+        }
+        return hasNext || branch.wasCut;
+    }
+
+    private boolean fetch() {
+        while (!current.has()) {
+            if (branches.hasNext() || active.size() > 0) {
+                Branch branch = branches.hasNext()
+                    ? new Branch(branches.next())
+                    : active.removeFirst();
+                boolean isContended = branches.hasNext() || active.size() > 0;
+                if (pull(branch, isContended)) {
+                    if (branch.spent > budget || branch.wasCut) {
+                        postponed.addLast(branch);
+                    } else {
+                        active.addLast(branch);
+                    }
+                }
+            } else if (postponed.size() > 0) {
+                // no one to share time with anymore - go in order
+                if (!pull(postponed.getFirst(), false)) {
+                    postponed.removeFirst();
+                }
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean hasNext() {
+        return fetch();
+    }
+
+    public A next() {
+        fetch();
+        A value = current.unw();
+        current = non();
+        return value;
+    }
+}
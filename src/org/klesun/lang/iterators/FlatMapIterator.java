@@ -2,53 +2,92 @@ package org.klesun.lang.iterators;
 
 import org.klesun.lang.*;
 
+import java.util.ArrayDeque;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
-import static org.klesun.lang.Lang.*;
-
+/**
+ * when one of the iterables is itself a flat map that was not started yet (It.cnc()
+ * of It.cnc() or fap() of fap()), its source is iterated here in a loop rather than
+ * through its hasNext(), so that this nesting did not add frames to the java stack
+ *
+ * only directly nested flat maps are taken over - a map(), flt(), MemIt or any other
+ * iterator in between is still called recursively, so stack depth still grows with
+ * resolution depth, and MemIt's StackOverflowError guard is still needed
+ */
 public class FlatMapIterator<A, B> implements Iterator<B> {
-    final It<Iterable<B>> iterables;
-    Opt<Iterator<Iterator<B>>> iterators = non();
-    private Iterator<B> current = new L<B>().iterator();
-    private int i = 0;
+    private static class Frame<A, B> {
+        final Iterator<A> sourceIt;
+        final Lang.F2<A, Integer, Iterable<B>> flatten;
+        // hundreds of thousands of types come here. this is probably wrong and should be fixed
+        // skipping duplicates does not seem a good solution since it slows tests
+        // it would be better if there were no duplicates in the first place
+        final Set<Object> occurrences = new HashSet<>();
+        int i = 0;
+
+        Frame(Iterator<A> sourceIt, Lang.F2<A, Integer, Iterable<B>> flatten) {
+            this.sourceIt = sourceIt;
+            this.flatten = flatten;
+        }
+
+        /** @return null if source is over */
+        Iterable<B> nextIterable() {
+            while (sourceIt.hasNext()) {
+                Iterable<B> ble = flatten.apply(sourceIt.next(), i++);
+                Object hash = ble instanceof It ? ((It<B>) ble).getSourceHash() : ble;
+                if (occurrences.add(hash)) {
+                    return ble;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final ArrayDeque<Frame<?, B>> frames = new ArrayDeque<>();
+    private Iterator<B> current = null;
 
     public FlatMapIterator(Iterator<A> sourceIt, Lang.F2<A, Integer, Iterable<B>> flatten) {
-        // hundreds of thousands of types come here. this is probably wrong and should be fixed
-        this.iterables = It(() -> sourceIt)
-            .map((el, i) -> flatten.apply(el,i))
-            // this does not seem a good solution since it slows tests
-            // it would be better if there were no duplicates in the first place
-            .unq(ble -> ble instanceof It ? ((It<B>) ble).getSourceHash() : ble)
-            ;
+        frames.addLast(new Frame<>(sourceIt, flatten));
     }
 
-    private Iterator<Iterator<B>> getIterators() {
-        if (!iterators.has()) {
-            iterators = som(iterables.map(ble -> ble.iterator()).iterator());
-        }
-        return iterators.unw();
+    private boolean isFresh() {
+        return current == null && frames.size() == 1 && frames.getFirst().i == 0;
     }
 
-    private Opt<Lang.S<B>> getNextSup() {
-        Iterator<Iterator<B>> iterators = getIterators();
-        if (current.hasNext()) {
-            return som(() -> current.next());
-        } else {
-            while (iterators.hasNext()) {
-                //System.out.println("zhopa hasNext " + i);
-                current = iterators.next();
-                if (current.hasNext()) {
-                    return som(() -> current.next());
-                }
-                ++i;
+    /** @return false if there are no more elements in any of the iterables */
+    private boolean advance() {
+        while (current == null || !current.hasNext()) {
+            current = null;
+            Frame<?, B> frame = frames.peekLast();
+            if (frame == null) {
+                return false;
+            }
+            Iterable<B> ble = frame.nextIterable();
+            if (ble == null) {
+                frames.removeLast();
+                continue;
+            }
+            Iterator<B> iter = ble.iterator();
+            if (iter instanceof FlatMapIterator && ((FlatMapIterator<?, B>) iter).isFresh()) {
+                // take over its source, it would be iterated in exactly same order
+                frames.addLast(((FlatMapIterator<?, B>) iter).frames.removeFirst());
+            } else {
+                current = iter;
             }
-            return non();
         }
+        return true;
     }
+
     public boolean hasNext() {
-        return getNextSup().has();
+        return advance();
     }
+
     public B next() {
-        return getNextSup().unw().get();
+        if (!advance()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
     }
 }
@@ -0,0 +1,55 @@
+package org.klesun.lang.iterators;
+
+import org.klesun.lang.Lang;
+import org.klesun.lang.Opt;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * map + filter of empty optionals in one step, used to be map().fap() which
+ * cost an It, a FlatMapIterator and a lambda per element of the source
+ *
+ * values are distinct, same as with fap() - it skips iterables equal to ones
+ * it met before, and optionals of equal values are equal
+ */
+public class FopIterator<A, B> implements Iterator<B> {
+    private final Iterator<A> sourceIt;
+    private final Lang.F2<A, Integer, Opt<B>> convert;
+    private final Set<B> occurrences = new HashSet<>();
+    private B current = null;
+    private boolean hasCurrent = false;
+    private int i = 0;
+
+    public FopIterator(Iterator<A> sourceIt, Lang.F2<A, Integer, Opt<B>> convert) {
+        this.sourceIt = sourceIt;
+        this.convert = convert;
+    }
+
+    private boolean fetch() {
+        while (!hasCurrent && sourceIt.hasNext()) {
+            Opt<B> value = convert.apply(sourceIt.next(), i++);
+            if (value.has() && occurrences.add(value.unw())) {
+                current = value.unw();
+                hasCurrent = true;
+            }
+        }
+        return hasCurrent;
+    }
+
+    public boolean hasNext() {
+        return fetch();
+    }
+
+    public B next() {
+        if (!fetch()) {
+            throw new NoSuchElementException();
+        }
+        B value = current;
+        current = null;
+        hasCurrent = false;
+        return value;
+    }
+}
@@ -65,7 +65,7 @@ public class Logger
         }, ModalityState.any());
     }
 
-    private void logMsg(String msg)
+    public void logMsg(String msg)
     {
         System.out.println(msg);
         wholeText += msg + "\n";
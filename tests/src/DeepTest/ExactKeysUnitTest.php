@@ -1531,6 +1531,139 @@ class ExactKeysUnitTest
         ];
     }
 
+    private static function makeReservation(array $pax)
+    {
+        return [
+            'pnr' => 'QWE123',
+            'itinerary' => [['from' => 'KIV', 'to' => 'RIX']],
+            'passengers' => [$pax],
+        ];
+    }
+
+    public function provideSameFuncNestedShapeFirstCall()
+    {
+        $reservation = self::makeReservation(['name' => 'Vasya', 'age' => 19]);
+        // should suggest name, age
+        $reservation['passengers'][0][''];
+        return [
+            [$reservation, ['pnr', 'itinerary', 'passengers']],
+            [$reservation['itinerary'][0], ['from', 'to']],
+            [$reservation['passengers'][0], ['name', 'age']],
+        ];
+    }
+
+    /** same function in another search must not get keys of the previous call */
+    public function provideSameFuncNestedShapeSecondCall()
+    {
+        $reservation = self::makeReservation(['ptc' => 'ADT', 'fareGroup' => 'bulk']);
+        // should suggest ptc, fareGroup
+        $reservation['passengers'][0][''];
+        return [
+            [$reservation, ['pnr', 'itinerary', 'passengers']],
+            [$reservation['itinerary'][0], ['from', 'to']],
+            [$reservation['passengers'][0], ['ptc', 'fareGroup']],
+        ];
+    }
+
+    private static function makeDefaultReservation()
+    {
+        return self::makeReservation(['name' => 'Petja', 'ptc' => 'CHD']);
+    }
+
+    public function provideNoArgFuncNestedShapeFirstSearch()
+    {
+        $reservation = self::makeDefaultReservation();
+        return [
+            [$reservation, ['pnr', 'itinerary', 'passengers']],
+            [$reservation['itinerary'][0], ['from', 'to']],
+            [$reservation['passengers'][0], ['name', 'ptc']],
+        ];
+    }
+
+    /** function without args has same context in each search, so it is taken from project type cache */
+    public function provideNoArgFuncNestedShapeSecondSearch()
+    {
+        $reservation = self::makeDefaultReservation();
+        // should suggest name, ptc
+        $reservation['passengers'][0][''];
+        return [
+            [$reservation, ['pnr', 'itinerary', 'passengers']],
+            [$reservation['itinerary'][0], ['from', 'to']],
+            [$reservation['passengers'][0], ['name', 'ptc']],
+        ];
+    }
+
+    private static function findTicket(int $id)
+    {
+        if ($id > 0) {
+            return [
+                'id' => $id,
+                "name" => 'Vova',
+                'ticket' => ['number' => '123-4567890123', 'fare' => 14.50],
+            ];
+        }
+        return ['id' => -1, 'error' => 'Ticket not found'];
+    }
+
+    public function provideIndexedReturnShape()
+    {
+        $record = self::findTicket(5);
+        // should suggest id, name, ticket, error
+        $record[''];
+        return [
+            [$record, ['id', 'name', 'ticket', 'error']],
+            [$record['ticket'], ['number', 'fare']],
+        ];
+    }
+
+    private static function getPhrases()
+    {
+        return ['it\'s' => 'it is', 'won\'t' => 'will not'];
+    }
+
+    /** escaped quote in a literal key name taken without resolution */
+    public function provideEscapedQuoteLiteralKey()
+    {
+        $phrases = self::getPhrases();
+        return [
+            [$phrases, ["it's", "won't"]],
+        ];
+    }
+
+    public function provideFieldWritesFromOtherPlaces()
+    {
+        $store = new TicketStore();
+        // should suggest number, fare, checked, office, pcc
+        $store->lastTicket[''];
+        return [
+            [$store->lastTicket, ['number', 'fare', 'checked', 'office', 'pcc']],
+        ];
+    }
+
+    public function provideTableBuiltIns()
+    {
+        $list = [];
+        $pathInfo = pathinfo('/www/htdocs/inc/lib.inc.php');
+        $pathInfo[''];
+        $list[] = [$pathInfo, ['dirname', 'basename', 'extension', 'filename']];
+        $date = getdate();
+        $date[''];
+        $list[] = [$date, [
+            'seconds', 'minutes', 'hours', 'mday', 'wday', 'mon',
+            'year', 'yday', 'weekday', 'month', '0',
+        ]];
+        $uname = posix_uname();
+        $uname[''];
+        $list[] = [$uname, ['sysname', 'nodename', 'release', 'version', 'machine', 'domainname']];
+        $times = posix_times();
+        $times[''];
+        $list[] = [$times, ['ticks', 'utime', 'stime', 'cutime', 'cstime']];
+        $gcStatus = gc_status();
+        $gcStatus[''];
+        $list[] = [$gcStatus, ['runs', 'collected', 'threshold', 'roots']];
+        return $list;
+    }
+
     //=============================
     // following are not implemented yet
     //=============================
@@ -1685,3 +1818,26 @@ class FooBar
         return $cls::$KEY_1;
     }
 }
+
+class TicketStore
+{
+    public $lastTicket = ['number' => '123-4567890123'];
+
+    public function issue()
+    {
+        $this->lastTicket['fare'] = 14.50;
+    }
+}
+
+class TicketAudit
+{
+    public function check(TicketStore $store)
+    {
+        $store->lastTicket['checked'] = true;
+    }
+}
+
+function assignTicketOffice(TicketStore $store)
+{
+    $store->lastTicket['office'] = 'RIX';
+}
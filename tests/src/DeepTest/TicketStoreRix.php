@@ -0,0 +1,11 @@
+<?php
+namespace DeepTest;
+
+/** writes inherited field in another file - should be found through index */
+class TicketStoreRix extends TicketStore
+{
+    public function issueInRix()
+    {
+        $this->lastTicket['pcc'] = '0W3K';
+    }
+}
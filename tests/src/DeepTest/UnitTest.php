@@ -1378,6 +1378,100 @@ class UnitTest implements IProcessPntQueueAction /** extends \PHPUnit_Framework_
         return $list;
     }
 
+    public function provideArgFromCallSites($segment)
+    {
+        $list = [];
+        // arg type should be taken from calls of this method in the file
+        $segment[''];
+        $list[] = [$segment, ['from' => [], 'to' => [], 'date' => [], 'airline' => []]];
+        return $list;
+    }
+
+    private function callProvideArgFromCallSites()
+    {
+        $this->provideArgFromCallSites(['from' => 'KIV', 'to' => 'RIX', 'date' => '2018-05-01']);
+        array_map([$this, 'provideArgFromCallSites'], [['airline' => 'BT']]);
+    }
+
+    private static function initAirportConfig()
+    {
+        $GLOBALS['deepTestAirportConfig'] = ['code' => 'RIX', 'city' => 'Riga'];
+    }
+
+    private static function addAirportTerminals()
+    {
+        global $deepTestAirportConfig;
+        $deepTestAirportConfig['terminals'] = ['A', 'B'];
+    }
+
+    public function provideGlobalWrittenTwoWays()
+    {
+        global $deepTestAirportConfig;
+        $list = [];
+        // should suggest code, city, terminals
+        $deepTestAirportConfig[''];
+        $list[] = [$deepTestAirportConfig, ['code' => [], 'city' => [], 'terminals' => []]];
+        return $list;
+    }
+
+    public function provideWidenedKeyAssignments($code)
+    {
+        $list = [];
+        $fare = ['currency' => 'USD'];
+        switch ($code) {
+            case 'A1': $fare['a1'] = 1; break;
+            case 'A2': $fare['a2'] = 2; break;
+            case 'A3': $fare['a3'] = 3; break;
+            case 'A4': $fare['a4'] = 4; break;
+            case 'A5': $fare['a5'] = 5; break;
+            case 'A6': $fare['a6'] = 6; break;
+            case 'A7': $fare['a7'] = 7; break;
+            case 'A8': $fare['a8'] = 8; break;
+            case 'B1': $fare['tax'] = ['amount' => '10.00']; break;
+            case 'B2': $fare['tax']['code'] = 'XF'; break;
+            case 'B3': $fare['b3'] = 3; break;
+            case 'B4': $fare['b4'] = 4; break;
+            case 'B5': $fare['b5'] = 5; break;
+            case 'B6': $fare['b6'] = 6; break;
+            case 'B7': $fare['b7'] = 7; break;
+            case 'B8': $fare['b8'] = 8; break;
+            case 'C1': $fare['tax']['exempt'] = false; break;
+        }
+        // more than assignmentWideningThreshold key assignments are joined
+        // into one array, keys of all assignments should still be suggested
+        $fare[''];
+        $list[] = [$fare, [
+            'currency' => [],
+            'a1' => [], 'a2' => [], 'a3' => [], 'a4' => [],
+            'a5' => [], 'a6' => [], 'a7' => [], 'a8' => [],
+            'tax' => ['amount' => [], 'code' => [], 'exempt' => []],
+            'b3' => [], 'b4' => [], 'b5' => [],
+            'b6' => [], 'b7' => [], 'b8' => [],
+        ]];
+        return $list;
+    }
+
+    private static function peelFareLayer(int $n)
+    {
+        if ($n <= 0) {
+            return ['outer' => ['inner' => ['base' => '100.00']]];
+        }
+        $prev = self::peelFareLayer($n - 1);
+        return isset($prev['outer']) ? $prev['outer'] : $prev['inner'];
+    }
+
+    public function provideKeyFoundInNextCycleRound()
+    {
+        $list = [];
+        $fare = self::peelFareLayer(2);
+        // each level has own function context by arg, so the innermost call is
+        // found by the trail and gets types its outer call resolved so far: the
+        // base case gives 'outer', then 'inner' and 'base' are peeled from it
+        $fare[''];
+        $list[] = [$fare, ['outer' => [], 'inner' => [], 'base' => []]];
+        return $list;
+    }
+
     //=============================
     // following are not implemented yet
     //=============================
@@ -783,6 +783,32 @@ class UsageResolverUnitTest
         ];
     }
 
+    function provide_flag_constants($countMode, $filterMode, $decodeFlags, $entFlags, $pathPart, $globFlags, $roundMode)
+    {
+        count([], $countMode);
+        array_filter([], null, $filterMode);
+        json_decode('{}', true, 512, $decodeFlags);
+        htmlspecialchars('<b>', $entFlags);
+        pathinfo('/tmp/fare.json', $pathPart);
+        glob('*.php', $globFlags);
+        round(1.5, 0, $roundMode);
+        return [
+            'countMode' => [COUNT_NORMAL, COUNT_RECURSIVE][rand()],
+            'filterMode' => [ARRAY_FILTER_USE_KEY, ARRAY_FILTER_USE_BOTH][rand()],
+            'decodeFlags' => [
+                JSON_BIGINT_AS_STRING, JSON_INVALID_UTF8_IGNORE, JSON_INVALID_UTF8_SUBSTITUTE,
+                JSON_OBJECT_AS_ARRAY, JSON_THROW_ON_ERROR,
+            ][rand()],
+            'entFlags' => [
+                ENT_COMPAT, ENT_QUOTES, ENT_NOQUOTES, ENT_IGNORE, ENT_SUBSTITUTE,
+                ENT_DISALLOWED, ENT_HTML401, ENT_XML1, ENT_XHTML, ENT_HTML5,
+            ][rand()],
+            'pathPart' => [PATHINFO_DIRNAME, PATHINFO_BASENAME, PATHINFO_EXTENSION, PATHINFO_FILENAME][rand()],
+            'globFlags' => [GLOB_MARK, GLOB_NOSORT, GLOB_NOCHECK, GLOB_NOESCAPE, GLOB_BRACE, GLOB_ONLYDIR, GLOB_ERR][rand()],
+            'roundMode' => [PHP_ROUND_HALF_UP, PHP_ROUND_HALF_DOWN, PHP_ROUND_HALF_EVEN, PHP_ROUND_HALF_ODD][rand()],
+        ];
+    }
+
     //============================
     // TODO: testify following
     //============================